@@ -0,0 +1,60 @@
+package com.blr19c.common.collection;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CacheHashMap#getCache(Object)}与1.4.3版本({@link BaselineCacheHashMap})的命中读取对比
+ * 添加-prof gc查看每次读取分配的内存
+ * mvn -P jmh test-compile exec:exec -Djmh.args="CacheHashMapBenchmark -prof gc"
+ *
+ * @author blr
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CacheHashMapBenchmark {
+    private static final int MASK = (1 << 16) - 1;
+
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    @Param({"OLDEST", "LEAST_USED"})
+    CacheHashMap.DeleteStrategyEnum strategy;
+
+    private CacheHashMap<Integer, Integer> current;
+    private BaselineCacheHashMap<Integer, Integer> baseline;
+    /**
+     * 提前装箱的随机key 避免测量装箱
+     */
+    private Integer[] keys;
+    private int index;
+
+    @Setup
+    public void setup() {
+        current = new CacheHashMap<>(strategy, size);
+        baseline = new BaselineCacheHashMap<>(strategy, size);
+        for (int i = 0; i < size; i++) {
+            current.putCache(i, i);
+            baseline.putCache(i, i);
+        }
+        keys = new Integer[MASK + 1];
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = ThreadLocalRandom.current().nextInt(size);
+    }
+
+    @Benchmark
+    public Integer getCache() {
+        return current.getCache(keys[index++ & MASK]);
+    }
+
+    @Benchmark
+    public Integer getCacheBaseline() {
+        return baseline.getCache(keys[index++ & MASK]);
+    }
+}
@@ -0,0 +1,134 @@
+package com.blr19c.common.collection;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 生成的{@link ModelMapper}与{@link ModelMapper.ReflectiveModelMapper}以及{@link PictogramMap#toModel(Class, PictogramMap.Recognizer)}的对比
+ * 属性都是包装类型,{@link PictogramMap#toModel(Class, PictogramMap.Recognizer)}不会拆箱
+ * mvn -P jmh test-compile exec:exec -Djmh.args="ModelMapperBenchmark -prof gc"
+ *
+ * @author blr
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ModelMapperBenchmark {
+    private PictogramMap map;
+    private Model model;
+    private ModelMapper<Model> generated;
+    private ModelMapper<Model> reflective;
+
+    @Setup
+    public void setup() {
+        model = new Model();
+        model.setId(1);
+        model.setCount(2L);
+        model.setScore(1.5D);
+        model.setEnabled(true);
+        model.setUserName("blr");
+        model.setEmail("blr@blr19c.com");
+        model.setRemark("remark");
+        generated = ModelMapper.of(Model.class);
+        reflective = new ModelMapper.ReflectiveModelMapper<>(Model.class);
+        if (generated instanceof ModelMapper.ReflectiveModelMapper)
+            throw new IllegalStateException("ModelMapper is not generated");
+        map = PictogramMap.toPictogramMapAsModel(model, generated);
+    }
+
+    @Benchmark
+    public Model generated() {
+        return map.toModel(generated);
+    }
+
+    @Benchmark
+    public Model reflective() {
+        return map.toModel(reflective);
+    }
+
+    @Benchmark
+    public Model toModel() {
+        return map.toModel(Model.class, Map::get);
+    }
+
+    @Benchmark
+    public Map<Object, Object> generatedToMap() {
+        return PictogramMap.toPictogramMapAsModel(model, generated).getMap();
+    }
+
+    @Benchmark
+    public Map<Object, Object> reflectiveToMap() {
+        return PictogramMap.toPictogramMapAsModel(model, reflective).getMap();
+    }
+
+    public static class Model {
+        private Integer id;
+        private Long count;
+        private Double score;
+        private Boolean enabled;
+        private String userName;
+        private String email;
+        private String remark;
+
+        public Integer getId() {
+            return id;
+        }
+
+        public void setId(Integer id) {
+            this.id = id;
+        }
+
+        public Long getCount() {
+            return count;
+        }
+
+        public void setCount(Long count) {
+            this.count = count;
+        }
+
+        public Double getScore() {
+            return score;
+        }
+
+        public void setScore(Double score) {
+            this.score = score;
+        }
+
+        public Boolean getEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(Boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getUserName() {
+            return userName;
+        }
+
+        public void setUserName(String userName) {
+            this.userName = userName;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public void setEmail(String email) {
+            this.email = email;
+        }
+
+        public String getRemark() {
+            return remark;
+        }
+
+        public void setRemark(String remark) {
+            this.remark = remark;
+        }
+    }
+}
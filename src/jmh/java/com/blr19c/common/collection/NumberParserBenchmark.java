@@ -0,0 +1,49 @@
+package com.blr19c.common.collection;
+
+import org.apache.commons.collections4.MapUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MapGetInterface#getLong(Object)}使用{@link NumberParser}与1.4.3版本使用的{@link MapUtils#getLong}对比
+ * mvn -P jmh test-compile exec:exec -Djmh.args="NumberParserBenchmark -prof gc"
+ *
+ * @author blr
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class NumberParserBenchmark {
+
+    /**
+     * 整数 小数 分组符号 不是数字
+     */
+    @Param({"123456", "1234.5", "1,234,567", "abc"})
+    String value;
+
+    private PictogramMap map;
+    private Map<Object, Object> source;
+
+    @Setup
+    public void setup() {
+        source = new HashMap<>();
+        source.put("value", value);
+        map = PictogramMap.toPictogramMap(source);
+    }
+
+    @Benchmark
+    public Long getLong() {
+        return map.getLong("value");
+    }
+
+    @Benchmark
+    public Long getLongBaseline() {
+        return MapUtils.getLong(source, "value");
+    }
+}
@@ -1,27 +1,73 @@
 package com.blr19c.common.collection;
 
+import com.blr19c.common.code.ReflectionUtils;
+import com.blr19c.common.ram.RamEstimator;
+
+import java.lang.reflect.Array;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.LongAdder;
-import java.util.function.Supplier;
-import java.util.stream.Collectors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 /**
  * 限制map的大小 {@link DeleteStrategyEnum}
- * 如果{@link #putCache(Object, Object)}过于频繁
- * 可能并不会按照原有的删除策略执行
- * 在还未进行排序元素就已经删除
+ * 删除策略由{@link CachePolicy}维护,新增和删除都是O(1)
+ * 可以设置写入过期和访问过期,过期元素由{@link TimerWheel}删除
+ * 写入频繁时可以分段,每段独立加锁执行删除策略
+ * {@link #getOrLoad(Object, Function)}加载不存在的元素,同一个key同时只会加载一次
+ * 可以按照重量(例如占用的内存)限制大小 {@link #setMaximumWeight(long)}
+ * 命中 加载 删除次数记录在{@link #getStats()}中
+ * <p>
+ * 继承自ConcurrentHashMap的put remove putAll以及entrySet() values()的删除都会经过分段和删除策略
+ * putIfAbsent replace compute computeIfAbsent computeIfPresent merge replaceAll不支持
+ * keySet()的remove和clear会经过分段,但是它的迭代器(包括removeIf removeAll retainAll)直接删除ConcurrentHashMap中的元素,不能使用
  *
  * @author blr
  */
 public class CacheHashMap<K, V> extends ConcurrentHashMap<CacheHashMap.Node<K>, V> {
-    private final int maximumCapacity, concurrencyLevel;
-    private final boolean isLeastUsed;
-    private final AtomicReference<LinkedBlockingDeque<Node<K>>> delReady;
-    private Comparator<Node<K>> comparator;
+    private final int maximumCapacity;
+    private final boolean recordAccess;
+    /**
+     * key到Node的索引,读取时不需要创建Node去查找
+     */
+    private final ConcurrentHashMap<K, Node<K>> index;
+    /**
+     * 分段 每段拥有自己的锁 删除策略 时间轮
+     */
+    private final Segment[] segments;
+    private final int segmentShift;
+    /**
+     * true时每段只限制自己的容量,总容量可能超出maximumCapacity(最多segments-1个)
+     */
+    private final boolean approximateCapacity;
+    /**
+     * 过期时间 0为不过期
+     */
+    private volatile long expireAfterWriteNanos, expireAfterAccessNanos;
+    /**
+     * 是否设置了过期时间
+     */
+    private volatile boolean expiring;
+    /**
+     * 设置最大重量之后才会计算重量
+     */
+    private volatile Weigher<? super K, ? super V> weigher;
+    private volatile long maximumWeight;
+    private final LongAdder totalWeight = new LongAdder();
+    /**
+     * 正在加载的key {@link #getOrLoad(Object, Function)}
+     */
+    final ConcurrentHashMap<K, LoadingFuture<V>> loading = new ConcurrentHashMap<>();
+    /**
+     * 命中 加载 删除的统计
+     */
+    final StatsCounter stats = new StatsCounter();
 
     public CacheHashMap() {
         this(DeleteStrategyEnum.OLDEST, 64);
@@ -41,128 +87,825 @@ public class CacheHashMap<K, V> extends ConcurrentHashMap<CacheHashMap.Node<K>,
      */
     public CacheHashMap(int initialCapacity, float loadFactor, int concurrencyLevel,
                         DeleteStrategyEnum deleteStrategyEnum, int maximumCapacity) {
+        this(initialCapacity, loadFactor, concurrencyLevel, deleteStrategyEnum, maximumCapacity, 1, false);
+    }
+
+    /**
+     * 分段的缓存 写入频繁时每段独立加锁和执行删除策略
+     * 删除策略只在段内生效(例如OLDEST删除的是本段最老的)
+     *
+     * @param initialCapacity     初始容量 {@link ConcurrentHashMap#ConcurrentHashMap(int, float, int)}
+     * @param loadFactor          负载因子 {@link ConcurrentHashMap#ConcurrentHashMap(int, float, int)}
+     * @param concurrencyLevel    并发级别 {@link ConcurrentHashMap#ConcurrentHashMap(int, float, int)}
+     * @param deleteStrategyEnum  删除策略
+     * @param maximumCapacity     最大容量超过之后执行删除策略
+     * @param segments            分段数量 会向上取2的幂 通常设置为cpu核数
+     * @param approximateCapacity false: 总数量超过maximumCapacity时删除本段的元素(本段没有时删除其他段的)
+     *                            true: 每段只保证自己不超过maximumCapacity/segments,段之间没有任何竞争
+     */
+    @SuppressWarnings("unchecked")
+    public CacheHashMap(int initialCapacity, float loadFactor, int concurrencyLevel,
+                        DeleteStrategyEnum deleteStrategyEnum, int maximumCapacity,
+                        int segments, boolean approximateCapacity) {
         super(initialCapacity, loadFactor, concurrencyLevel);
+        if (segments <= 0)
+            throw new IllegalArgumentException("segments must be positive, actual:" + segments);
         this.maximumCapacity = maximumCapacity;
-        this.concurrencyLevel = concurrencyLevel;
-        this.delReady = new AtomicReference<>(new LinkedBlockingDeque<>());
-        this.isLeastUsed = deleteStrategyEnum == DeleteStrategyEnum.LEAST_USED;
-        switch (deleteStrategyEnum) {
-            case LEAST_USED:
-                //如果使用次数相同先添加的在前面
-                comparator = Comparator.comparing(kNode -> kNode.usageCount.intValue());
-                comparator = comparator.thenComparing(kNode -> kNode.addTime);
-                break;
-            case OLDEST:
-                comparator = Comparator.comparing(kNode -> kNode.addTime);
-                break;
-        }
+        this.index = new ConcurrentHashMap<>(initialCapacity, loadFactor, concurrencyLevel);
+        this.recordAccess = deleteStrategyEnum != DeleteStrategyEnum.OLDEST;
+        this.approximateCapacity = approximateCapacity;
+        int segmentCount = segments == 1 ? 1 : Integer.highestOneBit(segments - 1) << 1;
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+        //Segment是泛型的内部类 不能直接创建数组
+        this.segments = (Segment[]) Array.newInstance(Segment.class, segmentCount);
+        int share = (maximumCapacity + segmentCount - 1) / segmentCount;
+        int stripes = Math.max(1, Runtime.getRuntime().availableProcessors() / segmentCount);
+        for (int i = 0; i < segmentCount; i++)
+            this.segments[i] = new Segment(CachePolicy.of(deleteStrategyEnum, share), share, stripes);
     }
 
     /**
      * 获取缓存的value
+     * 通过key直接找到Node,不创建任何对象
+     * 已经过期的元素不会返回
      */
     public V getCache(K key) {
-        Node<K> node = new Node<>(Instant.now(), new LongAdder(), Objects.requireNonNull(key));
-        V value = super.get(node);
-        if (value != null)
-            addUsageCount(node);
-        return value;
+        return getCache(key, true);
     }
 
     /**
      * 添加并执行缓存策略
+     * 超出容量时由{@link CachePolicy}在O(1)时间内选出需要删除的元素
      */
     public V putCache(K key, V value) {
-        Node<K> node = new Node<>(Instant.now(), new LongAdder(), Objects.requireNonNull(key));
-        V oldValue = super.put(node, value);
-        //有old说明没新增
-        if (oldValue != null)
+        Node<K> node = index.get(Objects.requireNonNull(key));
+        Segment segment = segmentFor(key);
+        V oldValue;
+        //总是记录写入时间 之后才设置refreshAfterWrite时也能判断已有元素是否需要刷新
+        long now = System.nanoTime();
+        Weigher<? super K, ? super V> weigher = this.weigher;
+        //已存在直接替换,替换失败说明已经被删除需要重新新增
+        //限制重量时需要在锁中更新重量
+        if (weigher == null && node != null && !node.isExpired(now) && (oldValue = super.replace(node, value)) != null) {
+            if (expiring)
+                segment.refreshExpire(node, now, true);
+            else
+                node.writeNanos = now;
+            if (oldValue != value) {
+                stats.recordRemoval(RemovalCause.REPLACED);
+                onRemoval(key, oldValue, RemovalCause.REPLACED);
+            }
             return oldValue;
-        delReady.updateAndGet(nodes -> {
-            nodes.offerLast(node);
-            return nodes;
-        });
-        if (maximumCapacity >= this.size())
-            return null;
-        //在delReady尝试删除
-        if (!delReady.get().isEmpty()) {
-            Object p;
-            int i = 2;
-            do if ((p = delReady.get().pollFirst()) != null && !p.equals(key))
-                p = super.remove(p);
-            while (p == null && --i != 0);
-            if (p != null) return null;
         }
+        //重量在锁外计算
+        long weight = weigher == null ? 0L : weigher.weigh(key, value);
+        if (weight < 0L)
+            throw new IllegalArgumentException("weight must not be negative, actual:" + weight);
+        oldValue = null;
+        segment.lock();
         try {
-            LinkedList<Node<K>> nodeLinkedList = sortedNode();
-            do if (nodeLinkedList.peekFirst() == null)
-                break;
-            while (super.remove(nodeLinkedList.removeFirst()) == null);
-        } catch (NoSuchElementException ignored) {
+            now = System.nanoTime();
+            //先处理积压的读取 保证删除顺序正确
+            segment.drainReadBuffer();
+            segment.expireEntries(now);
+            node = index.get(key);
+            if (node != null && node.isExpired(now)) {
+                segment.removeNode(node, RemovalCause.EXPIRED);
+                node = null;
+            }
+            if (node != null) {
+                oldValue = super.put(node, value);
+                if (oldValue != null && oldValue != value) {
+                    stats.recordRemoval(RemovalCause.REPLACED);
+                    onRemoval(key, oldValue, RemovalCause.REPLACED);
+                }
+            } else {
+                node = new Node<>(Instant.now(), new LongAdder(), key);
+                index.put(key, node);
+                super.put(node, value);
+                segment.size++;
+                segment.policy.onAdd(node);
+            }
+            segment.setWeight(node, weight);
+            segment.afterWrite(node, now);
+            segment.evict(node);
+        } finally {
+            segment.unlock();
+        }
+        //本段已经没有可以删除的元素 从其他段删除
+        if (!approximateCapacity)
+            for (int i = 0; i < segments.length && isOverflow(); i++)
+                if (segments[i] != segment)
+                    segments[i].evictOne();
+        return oldValue;
+    }
+
+    /**
+     * 删除并执行缓存策略
+     *
+     * @return 被删除的value 不存在或已经过期时返回null
+     */
+    public V removeCache(K key) {
+        return removeCache(Objects.requireNonNull(key), null, false);
+    }
+
+    /**
+     * 获取缓存的value,不存在时使用loader加载并添加
+     * 同一个key同时只会有一个线程执行loader,其他线程等待这次加载的结果
+     * loader返回null时不会添加
+     *
+     * @throws IllegalStateException loader中加载同一个key(会一直等待自己的结果)
+     */
+    public V getOrLoad(K key, Function<? super K, ? extends V> loader) {
+        V value = getCache(key);
+        if (value != null)
+            return value;
+        LoadingFuture<V> future = new LoadingFuture<>(Thread.currentThread());
+        LoadingFuture<V> loadingFuture = loading.putIfAbsent(key, future);
+        if (loadingFuture != null)
+            return join(key, loadingFuture);
+        try {
+            //等待期间其他线程可能已经加载完成
+            value = getCache(key, false);
+            if (value == null && (value = load(key, loader)) != null)
+                putCache(key, value);
+            future.complete(value);
+            return value;
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
         }
-        return null;
     }
 
     /**
      * 自定义比较器
      * 相当于自定义 {@link DeleteStrategyEnum}
+     * 自定义比较器无法维护顺序,删除时需要遍历全部元素
      */
     public void setComparator(Comparator<Node<K>> comparator) {
-        this.comparator = comparator;
+        Objects.requireNonNull(comparator);
+        for (Segment segment : segments) {
+            segment.lock();
+            try {
+                segment.policy.clear();
+                segment.policy = new CachePolicy.Sorted<>(super.keySet(), comparator,
+                        segments.length == 1 ? null : node -> segmentFor(node.key) == segment);
+            } finally {
+                segment.unlock();
+            }
+        }
     }
 
     /**
-     * 返回条件排序
+     * 写入(新增或修改)之后经过duration过期
+     * 只对之后写入的元素生效
      */
-    private LinkedList<Node<K>> sortedNode() {
-        //10分钟的保护期
-        Instant now = Instant.now().minusMillis(10);
-        LinkedList<Node<K>> nodeList = sort(super.keySet(), LinkedList::new);
-        //如果存在无保护
-        if (nodeList.stream().anyMatch(kNode -> now.isBefore(kNode.addTime)))
-            return nodeList;
-        Collections.reverse(nodeList);
-        return nodeList;
+    public void setExpireAfterWrite(Duration duration) {
+        expireAfterWriteNanos = toExpireNanos(duration);
+        initTimerWheel();
     }
 
     /**
-     * 添加计数
+     * 最后一次读取或写入之后经过duration过期
+     * 只对之后读取或写入的元素生效
      */
-    private void addUsageCount(Node<K> node) {
-        if (!isLeastUsed)
+    public void setExpireAfterAccess(Duration duration) {
+        expireAfterAccessNanos = toExpireNanos(duration);
+        initTimerWheel();
+    }
+
+    /**
+     * 限制总重量 使用{@link RamEstimator#sizeOf(Object...)}估算key和value占用的内存
+     * 只对之后写入的元素生效
+     */
+    public void setMaximumWeight(long maximumWeight) {
+        setMaximumWeight(maximumWeight, RamEstimator::sizeOf);
+    }
+
+    /**
+     * 限制总重量 超过时按照删除策略删除 与maximumCapacity同时生效
+     * 重量在写入时计算一次并保存,单个元素超过maximumWeight时不会被缓存
+     * 只对之后写入的元素生效
+     */
+    public void setMaximumWeight(long maximumWeight, Weigher<? super K, ? super V> weigher) {
+        if (maximumWeight < 0L)
+            throw new IllegalArgumentException("maximumWeight must not be negative, actual:" + maximumWeight);
+        this.maximumWeight = maximumWeight;
+        this.weigher = Objects.requireNonNull(weigher);
+    }
+
+    /**
+     * 命中 加载 删除次数的快照
+     */
+    public CacheStats getStats() {
+        return stats.snapshot();
+    }
+
+    /**
+     * 当前的总重量
+     */
+    public long getWeight() {
+        return totalWeight.sum();
+    }
+
+    /**
+     * 清空时同时清空删除策略
+     */
+    @Override
+    public void clear() {
+        for (Segment segment : segments)
+            segment.lock();
+        try {
+            for (Map.Entry<Node<K>, V> entry : super.entrySet()) {
+                entry.getKey().retired = true;
+                stats.recordRemoval(RemovalCause.EXPLICIT);
+                onRemoval(entry.getKey().key, entry.getValue(), RemovalCause.EXPLICIT);
+            }
+            super.clear();
+            index.clear();
+            totalWeight.reset();
+            for (Segment segment : segments)
+                segment.clear();
+        } finally {
+            for (Segment segment : segments)
+                segment.unlock();
+        }
+    }
+
+    /**
+     * 与{@link #putCache(Object, Object)}相同
+     */
+    @Override
+    public V put(Node<K> key, V value) {
+        return putCache(key.key, Objects.requireNonNull(value));
+    }
+
+    @Override
+    public void putAll(Map<? extends Node<K>, ? extends V> m) {
+        for (Map.Entry<? extends Node<K>, ? extends V> entry : m.entrySet())
+            put(entry.getKey(), entry.getValue());
+    }
+
+    /**
+     * 与{@link #removeCache(Object)}相同
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        return key instanceof Node ? removeCache(((Node<K>) key).key, null, false) : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object key, Object value) {
+        return key instanceof Node && value != null && removeCache(((Node<K>) key).key, value, true) != null;
+    }
+
+    @Override
+    public V putIfAbsent(Node<K> key, V value) {
+        throw unsupported("putIfAbsent");
+    }
+
+    @Override
+    public boolean replace(Node<K> key, V oldValue, V newValue) {
+        throw unsupported("replace");
+    }
+
+    @Override
+    public V replace(Node<K> key, V value) {
+        throw unsupported("replace");
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super Node<K>, ? super V, ? extends V> function) {
+        throw unsupported("replaceAll");
+    }
+
+    @Override
+    public V computeIfAbsent(Node<K> key, Function<? super Node<K>, ? extends V> mappingFunction) {
+        throw unsupported("computeIfAbsent");
+    }
+
+    @Override
+    public V computeIfPresent(Node<K> key, BiFunction<? super Node<K>, ? super V, ? extends V> remappingFunction) {
+        throw unsupported("computeIfPresent");
+    }
+
+    @Override
+    public V compute(Node<K> key, BiFunction<? super Node<K>, ? super V, ? extends V> remappingFunction) {
+        throw unsupported("compute");
+    }
+
+    @Override
+    public V merge(Node<K> key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        throw unsupported("merge");
+    }
+
+    /**
+     * 迭代器的remove和removeIf经过{@link #remove(Object)}
+     */
+    @Override
+    public Set<Map.Entry<Node<K>, V>> entrySet() {
+        return new AbstractSet<Map.Entry<Node<K>, V>>() {
+            @Override
+            public Iterator<Map.Entry<Node<K>, V>> iterator() {
+                return new RemovingIterator<>(CacheHashMap.super.entrySet().iterator(), Map.Entry::getKey);
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return CacheHashMap.super.entrySet().contains(o);
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                return o instanceof Map.Entry && CacheHashMap.this.remove(((Map.Entry<?, ?>) o).getKey(), ((Map.Entry<?, ?>) o).getValue());
+            }
+
+            @Override
+            public int size() {
+                return CacheHashMap.this.size();
+            }
+
+            @Override
+            public void clear() {
+                CacheHashMap.this.clear();
+            }
+        };
+    }
+
+    /**
+     * 迭代器的remove和removeIf经过{@link #remove(Object)}
+     */
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                Iterator<Map.Entry<Node<K>, V>> iterator = CacheHashMap.super.entrySet().iterator();
+                return new Iterator<V>() {
+                    private final RemovingIterator<Map.Entry<Node<K>, V>> entries =
+                            new RemovingIterator<>(iterator, Map.Entry::getKey);
+
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public V next() {
+                        return entries.next().getValue();
+                    }
+
+                    @Override
+                    public void remove() {
+                        entries.remove();
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return CacheHashMap.this.containsValue(o);
+            }
+
+            @Override
+            public int size() {
+                return CacheHashMap.this.size();
+            }
+
+            @Override
+            public void clear() {
+                CacheHashMap.this.clear();
+            }
+        };
+    }
+
+    /**
+     * 元素被删除或者value被替换之后调用
+     * 通常在持有锁时调用 不能执行耗时的操作
+     */
+    protected void onRemoval(K key, V value, RemovalCause cause) {
+    }
+
+    /**
+     * 不管是否超出容量 按照删除策略删除一个元素
+     *
+     * @return false: 已经没有元素可以删除
+     */
+    boolean evictAny() {
+        for (Segment segment : segments) {
+            segment.lock();
+            try {
+                segment.drainReadBuffer();
+                Node<K> victim = segment.policy.victim(null);
+                if (victim != null) {
+                    segment.removeNode(victim, RemovalCause.WEIGHT);
+                    return true;
+                }
+            } finally {
+                segment.unlock();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param recordStats 是否记录命中
+     */
+    private V getCache(K key, boolean recordStats) {
+        Node<K> node = index.get(Objects.requireNonNull(key));
+        V value = node == null ? null : super.get(node);
+        if (value == null) {
+            if (recordStats)
+                stats.recordMiss();
+            return null;
+        }
+        long now = expiring ? System.nanoTime() : 0L;
+        if (node.isExpired(now)) {
+            Segment segment = segmentFor(key);
+            segment.lock();
+            try {
+                segment.expireEntries(now);
+                if (!node.retired && node.isExpired(now))
+                    segment.removeNode(node, RemovalCause.EXPIRED);
+            } finally {
+                segment.unlock();
+            }
+            if (recordStats)
+                stats.recordMiss();
+            return null;
+        }
+        afterRead(node, now);
+        if (recordStats)
+            stats.recordHit();
+        return value;
+    }
+
+    /**
+     * 在段的锁中删除
+     *
+     * @param matchValue 为true时只有value相同才删除
+     */
+    private V removeCache(K key, Object expectedValue, boolean matchValue) {
+        if (index.get(key) == null)
+            return null;
+        Segment segment = segmentFor(key);
+        segment.lock();
+        try {
+            Node<K> node = index.get(key);
+            V value = node == null ? null : super.get(node);
+            if (value == null || (matchValue && !Objects.equals(value, expectedValue)))
+                return null;
+            long now = expiring ? System.nanoTime() : 0L;
+            if (node.isExpired(now)) {
+                segment.removeNode(node, RemovalCause.EXPIRED);
+                return null;
+            }
+            segment.removeNode(node, RemovalCause.EXPLICIT);
+            return value;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    private static UnsupportedOperationException unsupported(String method) {
+        return new UnsupportedOperationException(method + " is not supported by CacheHashMap, use putCache/removeCache/getOrLoad");
+    }
+
+    /**
+     * 执行loader并记录加载耗时 返回null也算作加载失败
+     */
+    V load(K key, Function<? super K, ? extends V> loader) {
+        long start = System.nanoTime();
+        V value;
+        try {
+            value = loader.apply(key);
+        } catch (Throwable e) {
+            stats.recordLoadFailure(System.nanoTime() - start);
+            throw e;
+        }
+        if (value == null)
+            stats.recordLoadFailure(System.nanoTime() - start);
+        else
+            stats.recordLoadSuccess(System.nanoTime() - start);
+        return value;
+    }
+
+    /**
+     * 读取之后 添加计数并刷新访问过期时间
+     * 读取只记录到读缓冲区,缓冲区满时才尝试获取锁批量交给删除策略
+     */
+    private void afterRead(Node<K> node, long now) {
+        boolean refreshExpire = expiring && expireAfterAccessNanos != 0L;
+        if (!recordAccess && !refreshExpire)
+            return;
+        Segment segment = segmentFor(node.key);
+        if (refreshExpire)
+            segment.refreshExpire(node, now, false);
+        if (!recordAccess)
             return;
-        Node<K> key = super.search(concurrencyLevel, (k, v) -> Objects.equals(k, node) ? k : null);
-        if (key != null) {
-            key.usageCount.increment();
-            if (super.size() > concurrencyLevel)
-                reDelReady();
+        node.usageCount.increment();
+        if (segment.readBuffer.offer(node))
+            segment.tryDrain(now);
+    }
+
+    /**
+     * 写入过期和访问过期取先到的
+     */
+    private long computeExpireNanos(Node<K> node, long now) {
+        long expireNanos = Long.MAX_VALUE;
+        if (expireAfterWriteNanos != 0L)
+            expireNanos = node.writeNanos + expireAfterWriteNanos - now;
+        if (expireAfterAccessNanos != 0L)
+            expireNanos = Math.min(expireNanos, expireAfterAccessNanos);
+        if (expireNanos == Long.MAX_VALUE)
+            return 0L;
+        //0表示不过期
+        long expireTime = now + expireNanos;
+        return expireTime == 0L ? 1L : expireTime;
+    }
+
+    private void initTimerWheel() {
+        for (Segment segment : segments) {
+            segment.lock();
+            try {
+                if (segment.timerWheel == null)
+                    segment.timerWheel = new TimerWheel<>(System.nanoTime());
+            } finally {
+                segment.unlock();
+            }
         }
+        expiring = true;
+    }
+
+    /**
+     * 获取key对应的Node
+     */
+    Node<K> getNode(K key) {
+        return index.get(key);
     }
 
     /**
-     * 重新排序delReady
+     * 等待其他线程的加载结果 加载失败时抛出相同的异常
+     * 当前线程正在加载这个key时直接失败,否则会一直等待
      */
-    private void reDelReady() {
-        delReady.getAndUpdate(nodes -> sort(nodes, LinkedBlockingDeque::new));
+    private static <V> V join(Object key, LoadingFuture<V> future) {
+        if (future.thread == Thread.currentThread())
+            throw new IllegalStateException("Recursive load, key:" + key);
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            ReflectionUtils.rethrowRuntimeException(e.getCause());
+            throw e;
+        }
+    }
+
+    /**
+     * 总数量或总重量是否超出
+     */
+    private boolean isOverflow() {
+        return maximumCapacity < this.size() || (weigher != null && maximumWeight < totalWeight.sum());
+    }
+
+    private Segment segmentFor(Object key) {
+        if (segments.length == 1)
+            return segments[0];
+        int h = key.hashCode() * 0x9E3779B9;
+        return segments[h >>> segmentShift];
+    }
+
+    private static long toExpireNanos(Duration duration) {
+        if (duration == null || duration.isNegative() || duration.isZero())
+            throw new IllegalArgumentException("duration must be positive, actual:" + duration);
+        return duration.toNanos();
+    }
+
+    /**
+     * 迭代器的remove经过{@link #remove(Object)} 不直接删除ConcurrentHashMap中的元素
+     */
+    private class RemovingIterator<E> implements Iterator<E> {
+        private final Iterator<E> iterator;
+        private final Function<E, Node<K>> keyMapper;
+        private E last;
+
+        RemovingIterator(Iterator<E> iterator, Function<E, Node<K>> keyMapper) {
+            this.iterator = iterator;
+            this.keyMapper = keyMapper;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public E next() {
+            return last = iterator.next();
+        }
+
+        @Override
+        public void remove() {
+            if (last == null)
+                throw new IllegalStateException();
+            CacheHashMap.this.remove(keyMapper.apply(last));
+            last = null;
+        }
+    }
+
+    /**
+     * 加载中的结果 记录执行loader的线程
+     */
+    static class LoadingFuture<V> extends CompletableFuture<V> {
+        /**
+         * 还没有开始加载时为null
+         */
+        volatile Thread thread;
+
+        LoadingFuture(Thread thread) {
+            this.thread = thread;
+        }
     }
 
     /**
-     * 对 nodes 排序 {@link Node#currentSnapshot()}
-     * <p>
-     * TimSort#sort(Object[], int, int, Comparator, Object[], int, int)
-     * 获取当前快照进行排序
-     * 当排序过程中添加了 {@link Node#usageCount}
-     * 会导致 Comparison method violates its general contract!
-     * 即: 不满足 {@link Comparator#compare(Object, Object)}
-     * compare(o1, o2) == -compare(o2, o1)
-     * 因为在这个过程中 {@link Node#usageCount} 随时可能被更改
+     * 缓存的一段
+     * 所有字段只在持有锁时访问
      */
-    private <C extends Collection<Node<K>>> C sort(Collection<Node<K>> nodes, Supplier<C> collectionFactory) {
-        return nodes.stream()
-                .map(Node::currentSnapshot)
-                .sorted(comparator)
-                .map(Node::restore)
-                .collect(Collectors.toCollection(collectionFactory));
+    private class Segment extends ReentrantLock {
+        private static final long serialVersionUID = 1L;
+
+        private final int maximumCapacity;
+        /**
+         * 读取记录 在持有锁时交给删除策略
+         */
+        private final ReadBuffer<Node<K>> readBuffer;
+        private CachePolicy<K> policy;
+        /**
+         * 设置过期时间之后才会创建
+         */
+        private TimerWheel<K> timerWheel;
+        private int size;
+        private long weight;
+
+        Segment(CachePolicy<K> policy, int maximumCapacity, int stripes) {
+            this.policy = policy;
+            this.maximumCapacity = maximumCapacity;
+            this.readBuffer = new ReadBuffer<>(stripes);
+        }
+
+        /**
+         * 尝试获取锁处理读缓冲区和过期元素,获取不到说明其他线程正在处理
+         */
+        void tryDrain(long now) {
+            if (!tryLock())
+                return;
+            try {
+                drainReadBuffer();
+                expireEntries(now);
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * 读缓冲区交给删除策略 需要持有锁
+         */
+        void drainReadBuffer() {
+            readBuffer.drainTo(node -> {
+                //已经被删除
+                if (!node.retired)
+                    policy.onAccess(node);
+            });
+        }
+
+        /**
+         * 刷新过期时间
+         * 已经在时间轮中的元素过期时间只会延后,不需要加锁,时间轮处理到时会重新放置
+         */
+        void refreshExpire(Node<K> node, long now, boolean write) {
+            if (node.expireNanos != 0L) {
+                if (write)
+                    node.writeNanos = now;
+                node.expireNanos = computeExpireNanos(node, now);
+                return;
+            }
+            //设置过期时间之前添加的元素还不在时间轮中
+            lock();
+            try {
+                if (!node.retired)
+                    afterWrite(node, now);
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * 写入之后刷新过期时间
+         */
+        void afterWrite(Node<K> node, long now) {
+            node.writeNanos = now;
+            if (timerWheel == null)
+                return;
+            node.expireNanos = computeExpireNanos(node, now);
+            timerWheel.schedule(node);
+        }
+
+        /**
+         * 超出容量时删除本段的元素
+         */
+        void evict(Node<K> added) {
+            //单个元素就超出重量时直接删除 不影响其他元素
+            if (weigher != null && added.weight > maximumWeight())
+                removeNode(added, RemovalCause.WEIGHT);
+            Node<K> victim;
+            while (isOverflow() && (victim = policy.victim(added)) != null)
+                removeNode(victim, overflowCause());
+        }
+
+        /**
+         * 删除本段的一个元素
+         */
+        void evictOne() {
+            lock();
+            try {
+                drainReadBuffer();
+                Node<K> victim;
+                if (isOverflow() && (victim = policy.victim(null)) != null)
+                    removeNode(victim, overflowCause());
+            } finally {
+                unlock();
+            }
+        }
+
+        boolean isOverflow() {
+            return approximateCapacity ? maximumCapacity < size || isWeightOverflow() : CacheHashMap.this.isOverflow();
+        }
+
+        boolean isWeightOverflow() {
+            if (weigher == null)
+                return false;
+            return approximateCapacity ? maximumWeight() < weight : maximumWeight < totalWeight.sum();
+        }
+
+        /**
+         * 超出重量时按重量删除 否则是超出数量
+         */
+        RemovalCause overflowCause() {
+            return isWeightOverflow() ? RemovalCause.WEIGHT : RemovalCause.SIZE;
+        }
+
+        /**
+         * 本段的最大重量
+         */
+        long maximumWeight() {
+            return approximateCapacity ? (maximumWeight + segments.length - 1) / segments.length : maximumWeight;
+        }
+
+        /**
+         * 修改元素的重量
+         */
+        void setWeight(Node<K> node, long weight) {
+            this.weight += weight - node.weight;
+            totalWeight.add(weight - node.weight);
+            node.weight = weight;
+        }
+
+        /**
+         * 时间轮推进到now 删除过期的元素
+         */
+        void expireEntries(long now) {
+            if (timerWheel != null)
+                timerWheel.advance(now, node -> removeNode(node, RemovalCause.EXPIRED));
+        }
+
+        /**
+         * 从map 索引 删除策略 时间轮中删除
+         */
+        void removeNode(Node<K> node, RemovalCause cause) {
+            node.retired = true;
+            size--;
+            weight -= node.weight;
+            totalWeight.add(-node.weight);
+            policy.onRemove(node);
+            if (timerWheel != null)
+                timerWheel.deschedule(node);
+            index.remove(node.key, node);
+            V value = CacheHashMap.super.remove(node);
+            if (value != null) {
+                stats.recordRemoval(cause);
+                onRemoval(node.key, value, cause);
+            }
+        }
+
+        void clear() {
+            size = 0;
+            weight = 0L;
+            policy.clear();
+            if (timerWheel != null)
+                timerWheel.clear();
+        }
     }
 
     static class Node<K> {
@@ -187,6 +930,46 @@ public class CacheHashMap<K, V> extends ConcurrentHashMap<CacheHashMap.Node<K>,
          */
         Node<K> original;
 
+        /**
+         * {@link CachePolicy}中使用的链表指针
+         */
+        Node<K> prev, next;
+
+        /**
+         * {@link CachePolicy.LeastUsed}中所在的频率桶
+         */
+        CachePolicy.LeastUsed.FrequencyBucket<K> bucket;
+
+        /**
+         * {@link CachePolicy.TinyLfu}中所在的区域
+         */
+        byte region;
+
+        /**
+         * {@link TimerWheel}中使用的链表指针
+         */
+        Node<K> timerPrev, timerNext;
+
+        /**
+         * 最后一次写入的时间 {@link System#nanoTime()}
+         */
+        volatile long writeNanos;
+
+        /**
+         * 过期时间 {@link System#nanoTime()} 0为不过期
+         */
+        volatile long expireNanos;
+
+        /**
+         * 已经从map中删除
+         */
+        volatile boolean retired;
+
+        /**
+         * 写入时计算的重量 {@link #setMaximumWeight(long, Weigher)}
+         */
+        long weight;
+
         Node(Instant addTime, LongAdder usageCount, K key) {
             this.addTime = addTime;
             this.usageCount = usageCount;
@@ -208,6 +991,14 @@ public class CacheHashMap<K, V> extends ConcurrentHashMap<CacheHashMap.Node<K>,
             return new Node<>(addTime, usageCount.longValue(), key, this);
         }
 
+        /**
+         * 是否已经过期
+         */
+        boolean isExpired(long now) {
+            long expireNanos = this.expireNanos;
+            return expireNanos != 0L && expireNanos - now <= 0L;
+        }
+
         /**
          * 从快照恢复
          */
@@ -238,6 +1029,46 @@ public class CacheHashMap<K, V> extends ConcurrentHashMap<CacheHashMap.Node<K>,
         }
     }
 
+    /**
+     * 计算元素的重量
+     */
+    public interface Weigher<K, V> {
+        long weigh(K key, V value);
+    }
+
+    /**
+     * 元素被删除的原因
+     */
+    public enum RemovalCause {
+        /**
+         * 超出最大数量
+         */
+        SIZE,
+        /**
+         * 超出最大重量
+         */
+        WEIGHT,
+        /**
+         * 过期
+         */
+        EXPIRED,
+        /**
+         * value被替换
+         */
+        REPLACED,
+        /**
+         * 清空
+         */
+        EXPLICIT;
+
+        /**
+         * 是否是缓存自动删除的
+         */
+        public boolean isEviction() {
+            return this == SIZE || this == WEIGHT || this == EXPIRED;
+        }
+    }
+
     /**
      * 删除策略
      */
@@ -249,6 +1080,11 @@ public class CacheHashMap<K, V> extends ConcurrentHashMap<CacheHashMap.Node<K>,
         /**
          * 最少使用的
          */
-        LEAST_USED
+        LEAST_USED,
+        /**
+         * W-TinyLFU 根据近期使用频率决定新元素能否挤掉旧元素
+         * 适合存在大量一次性扫描的场景
+         */
+        TINY_LFU
     }
 }
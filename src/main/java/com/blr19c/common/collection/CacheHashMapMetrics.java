@@ -0,0 +1,103 @@
+package com.blr19c.common.collection;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 把{@link CacheHashMap}的统计注册到micrometer 指标名称与micrometer自带的缓存指标相同
+ * 每次采集时读取{@link CacheStats},不会增加缓存读写的开销
+ *
+ * @author blr
+ */
+public class CacheHashMapMetrics implements MeterBinder {
+    private final Map<String, Supplier<CacheStats>> stats = new ConcurrentHashMap<>();
+    private final Map<String, Supplier<Number>> sizes = new ConcurrentHashMap<>();
+    /**
+     * 已经绑定的registry 之后添加的缓存直接注册到这些registry
+     */
+    private final List<MeterRegistry> registries = new CopyOnWriteArrayList<>();
+
+    /**
+     * 添加一个缓存 name作为tag(cache)
+     * 可以在{@link #bindTo(MeterRegistry)}之后添加,name相同时替换原来的缓存
+     */
+    public CacheHashMapMetrics add(String name, CacheHashMap<?, ?> cache) {
+        return add(name, cache::getStats, cache::size);
+    }
+
+    /**
+     * 添加一个堆外缓存 name作为tag(cache)
+     * 可以在{@link #bindTo(MeterRegistry)}之后添加,name相同时替换原来的缓存
+     */
+    public CacheHashMapMetrics add(String name, OffHeapCacheHashMap<?, ?> cache) {
+        return add(name, cache::getStats, cache::size);
+    }
+
+    @Override
+    public synchronized void bindTo(MeterRegistry registry) {
+        registries.add(registry);
+        for (String name : stats.keySet())
+            bind(registry, name);
+    }
+
+    private synchronized CacheHashMapMetrics add(String name, Supplier<CacheStats> stats, Supplier<Number> size) {
+        sizes.put(name, size);
+        if (this.stats.put(name, stats) == null)
+            for (MeterRegistry registry : registries)
+                bind(registry, name);
+        return this;
+    }
+
+    /**
+     * 指标每次采集时按照name读取 替换缓存之后不需要重新注册
+     */
+    private void bind(MeterRegistry registry, String name) {
+        Tags tags = Tags.of("cache", name);
+        Gauge.builder("cache.size", this, m -> m.sizes.get(name).get().doubleValue())
+                .tags(tags)
+                .description("The number of entries in this cache")
+                .register(registry);
+        counter(registry, name, "cache.gets", CacheStats::hitCount, tags.and("result", "hit"),
+                "The number of times cache lookup methods have returned a cached value");
+        counter(registry, name, "cache.gets", CacheStats::missCount, tags.and("result", "miss"),
+                "The number of times cache lookup methods have returned an uncached value");
+        counter(registry, name, "cache.evictions", CacheStats::evictionCount, tags,
+                "The number of entries evicted");
+        for (CacheHashMap.RemovalCause cause : CacheHashMap.RemovalCause.values())
+            counter(registry, name, "cache.removals", s -> s.removalCount(cause),
+                    tags.and("cause", cause.name()), "The number of entries removed");
+        counter(registry, name, "cache.load", CacheStats::loadSuccessCount, tags.and("result", "success"),
+                "The number of times cache loads have returned a value");
+        counter(registry, name, "cache.load", CacheStats::loadFailureCount, tags.and("result", "failure"),
+                "The number of times cache loads have thrown an exception or returned null");
+        FunctionTimer.builder("cache.load.duration", this,
+                m -> m.stats.get(name).get().loadCount(), m -> m.stats.get(name).get().totalLoadTime(),
+                TimeUnit.NANOSECONDS)
+                .tags(tags)
+                .description("The time spent loading values")
+                .register(registry);
+    }
+
+    /**
+     * micrometer只保存this的弱引用
+     */
+    private void counter(MeterRegistry registry, String name, String meterName,
+                         ToDoubleFunction<CacheStats> function, Tags tags, String description) {
+        FunctionCounter.builder(meterName, this, m -> function.applyAsDouble(m.stats.get(name).get()))
+                .tags(tags)
+                .description(description)
+                .register(registry);
+    }
+}
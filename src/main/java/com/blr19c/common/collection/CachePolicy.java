@@ -0,0 +1,417 @@
+package com.blr19c.common.collection;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.function.Predicate;
+
+/**
+ * {@link CacheHashMap}的删除策略实现
+ * 所有方法都需要在CacheHashMap持有锁的情况下调用
+ *
+ * @author blr
+ */
+abstract class CachePolicy<K> {
+
+    /**
+     * 根据删除策略创建
+     */
+    static <K> CachePolicy<K> of(CacheHashMap.DeleteStrategyEnum deleteStrategyEnum, int maximumCapacity) {
+        switch (deleteStrategyEnum) {
+            case LEAST_USED:
+                return new LeastUsed<>();
+            case TINY_LFU:
+                return new TinyLfu<>(maximumCapacity);
+            case OLDEST:
+            default:
+                return new Oldest<>();
+        }
+    }
+
+    /**
+     * 新增元素
+     */
+    abstract void onAdd(CacheHashMap.Node<K> node);
+
+    /**
+     * 元素被使用
+     */
+    abstract void onAccess(CacheHashMap.Node<K> node);
+
+    /**
+     * 元素被删除
+     */
+    abstract void onRemove(CacheHashMap.Node<K> node);
+
+    /**
+     * 获取需要删除的元素,不会返回excluded
+     */
+    abstract CacheHashMap.Node<K> victim(CacheHashMap.Node<K> excluded);
+
+    /**
+     * 清空
+     */
+    abstract void clear();
+
+    /**
+     * 侵入式双向链表 使用Node自身的prev/next 所有操作都是O(1)
+     */
+    static class NodeDeque<K> {
+        CacheHashMap.Node<K> first, last;
+
+        boolean isEmpty() {
+            return first == null;
+        }
+
+        void linkLast(CacheHashMap.Node<K> node) {
+            node.prev = last;
+            node.next = null;
+            if (last == null)
+                first = node;
+            else
+                last.next = node;
+            last = node;
+        }
+
+        void unlink(CacheHashMap.Node<K> node) {
+            CacheHashMap.Node<K> prev = node.prev, next = node.next;
+            if (prev == null)
+                first = next;
+            else
+                prev.next = next;
+            if (next == null)
+                last = prev;
+            else
+                next.prev = prev;
+            node.prev = node.next = null;
+        }
+
+        /**
+         * 从头开始第一个不是excluded的元素
+         */
+        CacheHashMap.Node<K> peekFirst(CacheHashMap.Node<K> excluded) {
+            CacheHashMap.Node<K> node = first;
+            if (node != null && node == excluded)
+                node = node.next;
+            return node;
+        }
+
+        void clear() {
+            CacheHashMap.Node<K> node = first;
+            while (node != null) {
+                CacheHashMap.Node<K> next = node.next;
+                node.prev = node.next = null;
+                node = next;
+            }
+            first = last = null;
+        }
+    }
+
+    /**
+     * 最老的 按照添加顺序排队删除队首
+     */
+    static class Oldest<K> extends CachePolicy<K> {
+        private final NodeDeque<K> deque = new NodeDeque<>();
+
+        @Override
+        void onAdd(CacheHashMap.Node<K> node) {
+            deque.linkLast(node);
+        }
+
+        @Override
+        void onAccess(CacheHashMap.Node<K> node) {
+        }
+
+        @Override
+        void onRemove(CacheHashMap.Node<K> node) {
+            deque.unlink(node);
+        }
+
+        @Override
+        CacheHashMap.Node<K> victim(CacheHashMap.Node<K> excluded) {
+            return deque.peekFirst(excluded);
+        }
+
+        @Override
+        void clear() {
+            deque.clear();
+        }
+    }
+
+    /**
+     * 最少使用的 使用频率桶实现O(1)的LFU
+     * 桶按照使用次数从小到大排列,同一个桶中先进入的在前面
+     */
+    static class LeastUsed<K> extends CachePolicy<K> {
+        /**
+         * 使用次数最少的桶
+         */
+        private FrequencyBucket<K> head;
+
+        @Override
+        void onAdd(CacheHashMap.Node<K> node) {
+            FrequencyBucket<K> bucket = head;
+            if (bucket == null || bucket.frequency != 0) {
+                bucket = new FrequencyBucket<>(0);
+                linkAfter(null, bucket);
+            }
+            bucket.nodes.linkLast(node);
+            node.bucket = bucket;
+        }
+
+        @Override
+        void onAccess(CacheHashMap.Node<K> node) {
+            FrequencyBucket<K> bucket = node.bucket;
+            if (bucket == null)
+                return;
+            FrequencyBucket<K> next = bucket.next;
+            if (next == null || next.frequency != bucket.frequency + 1) {
+                next = new FrequencyBucket<>(bucket.frequency + 1);
+                linkAfter(bucket, next);
+            }
+            bucket.nodes.unlink(node);
+            next.nodes.linkLast(node);
+            node.bucket = next;
+            if (bucket.nodes.isEmpty())
+                unlink(bucket);
+        }
+
+        @Override
+        void onRemove(CacheHashMap.Node<K> node) {
+            FrequencyBucket<K> bucket = node.bucket;
+            if (bucket == null)
+                return;
+            bucket.nodes.unlink(node);
+            node.bucket = null;
+            if (bucket.nodes.isEmpty())
+                unlink(bucket);
+        }
+
+        @Override
+        CacheHashMap.Node<K> victim(CacheHashMap.Node<K> excluded) {
+            //excluded最多只会让一个桶为空 所以最多看两个桶
+            for (FrequencyBucket<K> bucket = head; bucket != null; bucket = bucket.next) {
+                CacheHashMap.Node<K> node = bucket.nodes.peekFirst(excluded);
+                if (node != null)
+                    return node;
+            }
+            return null;
+        }
+
+        @Override
+        void clear() {
+            for (FrequencyBucket<K> bucket = head; bucket != null; bucket = bucket.next) {
+                for (CacheHashMap.Node<K> node = bucket.nodes.first; node != null; node = node.next)
+                    node.bucket = null;
+                bucket.nodes.clear();
+            }
+            head = null;
+        }
+
+        private void linkAfter(FrequencyBucket<K> prev, FrequencyBucket<K> bucket) {
+            FrequencyBucket<K> next = prev == null ? head : prev.next;
+            bucket.prev = prev;
+            bucket.next = next;
+            if (prev == null)
+                head = bucket;
+            else
+                prev.next = bucket;
+            if (next != null)
+                next.prev = bucket;
+        }
+
+        private void unlink(FrequencyBucket<K> bucket) {
+            if (bucket.prev == null)
+                head = bucket.next;
+            else
+                bucket.prev.next = bucket.next;
+            if (bucket.next != null)
+                bucket.next.prev = bucket.prev;
+            bucket.prev = bucket.next = null;
+        }
+
+        static class FrequencyBucket<K> {
+            final long frequency;
+            final NodeDeque<K> nodes = new NodeDeque<>();
+            FrequencyBucket<K> prev, next;
+
+            FrequencyBucket(long frequency) {
+                this.frequency = frequency;
+            }
+        }
+    }
+
+    /**
+     * W-TinyLFU
+     * 新元素先进入窗口(容量的1%),窗口溢出的元素进入主区的试用区
+     * 主区溢出时使用{@link FrequencySketch}比较候选者(试用区最新进入的)和牺牲者(试用区最老的)
+     * 频率更高的留下,一次性扫描的元素频率很低无法挤掉热点元素
+     * 试用区中再次被使用的元素晋升到保护区(主区的80%)
+     */
+    static class TinyLfu<K> extends CachePolicy<K> {
+        static final byte WINDOW = 1, PROBATION = 2, PROTECTED = 3;
+        private final NodeDeque<K> window = new NodeDeque<>();
+        private final NodeDeque<K> probation = new NodeDeque<>();
+        private final NodeDeque<K> protect = new NodeDeque<>();
+        private final FrequencySketch sketch;
+        private final int windowMaximum, protectedMaximum;
+        private int windowSize, protectedSize;
+
+        TinyLfu(int maximumCapacity) {
+            this.sketch = new FrequencySketch(maximumCapacity);
+            this.windowMaximum = Math.max(1, maximumCapacity / 100);
+            this.protectedMaximum = (int) ((maximumCapacity - windowMaximum) * .8);
+        }
+
+        @Override
+        void onAdd(CacheHashMap.Node<K> node) {
+            sketch.increment(node.key);
+            window.linkLast(node);
+            node.region = WINDOW;
+            windowSize++;
+            //窗口溢出 最老的进入试用区等待准入
+            while (windowSize > windowMaximum) {
+                CacheHashMap.Node<K> candidate = window.first;
+                window.unlink(candidate);
+                windowSize--;
+                probation.linkLast(candidate);
+                candidate.region = PROBATION;
+            }
+        }
+
+        @Override
+        void onAccess(CacheHashMap.Node<K> node) {
+            if (node.region == 0)
+                return;
+            sketch.increment(node.key);
+            switch (node.region) {
+                case WINDOW:
+                    window.unlink(node);
+                    window.linkLast(node);
+                    break;
+                case PROBATION:
+                    probation.unlink(node);
+                    protect.linkLast(node);
+                    node.region = PROTECTED;
+                    protectedSize++;
+                    //保护区溢出 最老的降级到试用区
+                    while (protectedSize > protectedMaximum) {
+                        CacheHashMap.Node<K> demoted = protect.first;
+                        protect.unlink(demoted);
+                        protectedSize--;
+                        probation.linkLast(demoted);
+                        demoted.region = PROBATION;
+                    }
+                    break;
+                case PROTECTED:
+                    protect.unlink(node);
+                    protect.linkLast(node);
+                    break;
+            }
+        }
+
+        @Override
+        void onRemove(CacheHashMap.Node<K> node) {
+            switch (node.region) {
+                case WINDOW:
+                    window.unlink(node);
+                    windowSize--;
+                    break;
+                case PROBATION:
+                    probation.unlink(node);
+                    break;
+                case PROTECTED:
+                    protect.unlink(node);
+                    protectedSize--;
+                    break;
+            }
+            node.region = 0;
+        }
+
+        @Override
+        CacheHashMap.Node<K> victim(CacheHashMap.Node<K> excluded) {
+            CacheHashMap.Node<K> victim = probation.peekFirst(excluded);
+            CacheHashMap.Node<K> candidate = probation.last;
+            if (victim == null)
+                victim = protect.peekFirst(excluded);
+            if (victim == null)
+                return window.peekFirst(excluded);
+            if (victim.region != PROBATION || candidate == null || candidate == victim || candidate == excluded)
+                return victim;
+            //候选者频率更高时才允许挤掉牺牲者
+            return sketch.frequency(candidate.key) > sketch.frequency(victim.key) ? victim : candidate;
+        }
+
+        @Override
+        void clear() {
+            for (NodeDeque<K> deque : Arrays.asList(window, probation, protect)) {
+                for (CacheHashMap.Node<K> node = deque.first; node != null; node = node.next)
+                    node.region = 0;
+                deque.clear();
+            }
+            windowSize = protectedSize = 0;
+            sketch.clear();
+        }
+    }
+
+    /**
+     * 自定义比较器 {@link CacheHashMap#setComparator(Comparator)}
+     * 无法维护顺序 每次删除时在全部元素中查找O(n)
+     */
+    static class Sorted<K> extends CachePolicy<K> {
+        private final Collection<CacheHashMap.Node<K>> nodes;
+        private final Comparator<CacheHashMap.Node<K>> comparator;
+        /**
+         * 分段时只从本段的元素中查找 null为全部
+         */
+        private final Predicate<CacheHashMap.Node<K>> owned;
+
+        Sorted(Collection<CacheHashMap.Node<K>> nodes, Comparator<CacheHashMap.Node<K>> comparator,
+               Predicate<CacheHashMap.Node<K>> owned) {
+            this.nodes = nodes;
+            this.comparator = comparator;
+            this.owned = owned;
+        }
+
+        @Override
+        void onAdd(CacheHashMap.Node<K> node) {
+        }
+
+        @Override
+        void onAccess(CacheHashMap.Node<K> node) {
+        }
+
+        @Override
+        void onRemove(CacheHashMap.Node<K> node) {
+        }
+
+        /**
+         * 存在10毫秒内添加的元素时删除排序最前的,否则删除排序最后的
+         * 取快照比较 {@link CacheHashMap.Node#currentSnapshot()}
+         * 避免比较过程中 {@link CacheHashMap.Node#usageCount} 被更改
+         */
+        @Override
+        CacheHashMap.Node<K> victim(CacheHashMap.Node<K> excluded) {
+            Instant now = Instant.now().minusMillis(10);
+            CacheHashMap.Node<K> min = null, max = null;
+            boolean anyProtected = false;
+            for (CacheHashMap.Node<K> node : nodes) {
+                if (node.equals(excluded) || (owned != null && !owned.test(node)))
+                    continue;
+                CacheHashMap.Node<K> snapshot = node.currentSnapshot();
+                anyProtected |= now.isBefore(snapshot.addTime);
+                if (min == null || comparator.compare(snapshot, min) < 0)
+                    min = snapshot;
+                if (max == null || comparator.compare(snapshot, max) >= 0)
+                    max = snapshot;
+            }
+            CacheHashMap.Node<K> victim = anyProtected ? min : max;
+            return victim == null ? null : victim.restore();
+        }
+
+        @Override
+        void clear() {
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.blr19c.common.collection;
+
+import java.util.Arrays;
+
+/**
+ * {@link CacheHashMap}的统计快照 {@link CacheHashMap#getStats()}
+ * 不可变,可以用{@link #minus(CacheStats)}计算两次快照之间的变化
+ *
+ * @author blr
+ */
+public final class CacheStats {
+    private final long hitCount;
+    private final long missCount;
+    private final long loadSuccessCount;
+    private final long loadFailureCount;
+    private final long totalLoadTime;
+    /**
+     * 按照{@link CacheHashMap.RemovalCause#ordinal()}保存的删除数量
+     */
+    private final long[] removalCounts;
+
+    CacheStats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount,
+               long totalLoadTime, long[] removalCounts) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTime = totalLoadTime;
+        this.removalCounts = removalCounts;
+    }
+
+    /**
+     * 读取次数
+     */
+    public long requestCount() {
+        return hitCount + missCount;
+    }
+
+    public long hitCount() {
+        return hitCount;
+    }
+
+    public long missCount() {
+        return missCount;
+    }
+
+    /**
+     * 命中率 没有读取时为1
+     */
+    public double hitRate() {
+        long requestCount = requestCount();
+        return requestCount == 0L ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    /**
+     * 未命中率 没有读取时为0
+     */
+    public double missRate() {
+        long requestCount = requestCount();
+        return requestCount == 0L ? 0.0 : (double) missCount / requestCount;
+    }
+
+    /**
+     * 加载次数 包括失败的
+     */
+    public long loadCount() {
+        return loadSuccessCount + loadFailureCount;
+    }
+
+    public long loadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    /**
+     * 加载抛出异常或者返回null的次数
+     */
+    public long loadFailureCount() {
+        return loadFailureCount;
+    }
+
+    /**
+     * 加载的总耗时 纳秒
+     */
+    public long totalLoadTime() {
+        return totalLoadTime;
+    }
+
+    /**
+     * 平均每次加载的耗时 纳秒
+     */
+    public double averageLoadPenalty() {
+        long loadCount = loadCount();
+        return loadCount == 0L ? 0.0 : (double) totalLoadTime / loadCount;
+    }
+
+    /**
+     * 被删除策略或过期删除的数量 不包括替换和清空
+     */
+    public long evictionCount() {
+        long evictionCount = 0L;
+        for (CacheHashMap.RemovalCause cause : CacheHashMap.RemovalCause.values())
+            if (cause.isEviction())
+                evictionCount += removalCounts[cause.ordinal()];
+        return evictionCount;
+    }
+
+    /**
+     * 指定原因的删除数量
+     */
+    public long removalCount(CacheHashMap.RemovalCause cause) {
+        return removalCounts[cause.ordinal()];
+    }
+
+    /**
+     * 两次快照之间的变化
+     */
+    public CacheStats minus(CacheStats other) {
+        long[] counts = new long[removalCounts.length];
+        for (int i = 0; i < counts.length; i++)
+            counts[i] = Math.max(0L, removalCounts[i] - other.removalCounts[i]);
+        return new CacheStats(
+                Math.max(0L, hitCount - other.hitCount),
+                Math.max(0L, missCount - other.missCount),
+                Math.max(0L, loadSuccessCount - other.loadSuccessCount),
+                Math.max(0L, loadFailureCount - other.loadFailureCount),
+                Math.max(0L, totalLoadTime - other.totalLoadTime),
+                counts);
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", loadSuccessCount=" + loadSuccessCount +
+                ", loadFailureCount=" + loadFailureCount +
+                ", totalLoadTime=" + totalLoadTime +
+                ", removalCounts=" + Arrays.toString(removalCounts) +
+                '}';
+    }
+}
@@ -0,0 +1,110 @@
+package com.blr19c.common.collection;
+
+import java.util.Arrays;
+
+/**
+ * 使用Count-Min Sketch估算元素的使用频率 {@link CachePolicy.TinyLfu}
+ * 每个计数器占4bit(最大15),一个long存放16个计数器,每个元素使用4个计数器取最小值
+ * 增加次数达到采样数量后所有计数器减半,使过去的热点逐渐老化
+ * 非线程安全,需要在CacheHashMap持有锁的情况下调用
+ *
+ * @author blr
+ */
+class FrequencySketch {
+    private static final long[] SEED = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int size;
+
+    /**
+     * @param maximumCapacity 缓存的最大容量,决定计数器数量和采样数量
+     */
+    FrequencySketch(long maximumCapacity) {
+        int capacity = (int) Math.min(Math.max(maximumCapacity, 1), 1 << 30);
+        int tableSize = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.table = new long[tableSize];
+        this.tableMask = tableSize - 1;
+        this.sampleSize = (int) Math.min(10L * capacity, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 估算的使用频率 0-15
+     */
+    int frequency(Object e) {
+        int hash = spread(e.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * 增加使用次数
+     */
+    void increment(Object e) {
+        int hash = spread(e.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++)
+            added |= incrementAt(indexOf(hash, i), start + i);
+        if (added && ++size == sampleSize)
+            reset();
+    }
+
+    /**
+     * 清空
+     */
+    void clear() {
+        Arrays.fill(table, 0L);
+        size = 0;
+    }
+
+    /**
+     * 第i个long中第j个计数器加一,已经是15时不再增加
+     */
+    private boolean incrementAt(int i, int j) {
+        int offset = j << 2;
+        long mask = 0xfL << offset;
+        if ((table[i] & mask) != mask) {
+            table[i] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 老化 所有计数器减半
+     */
+    private void reset() {
+        int count = 0;
+        for (int i = 0; i < table.length; i++) {
+            count += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (count >>> 2);
+    }
+
+    private int indexOf(int item, int i) {
+        long hash = (item + SEED[i]) * SEED[i];
+        hash += hash >>> 32;
+        return ((int) hash) & tableMask;
+    }
+
+    /**
+     * 防止质量较差的hashCode集中在少数计数器上
+     */
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
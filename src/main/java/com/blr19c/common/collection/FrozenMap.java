@@ -0,0 +1,358 @@
+package com.blr19c.common.collection;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 不可变的map {@link PictogramMap#freeze()}
+ * key和value按照原来的顺序保存在两个数组中,索引表使用开放寻址(线性探测)只保存下标,负载不超过0.5
+ * 创建之后不再修改,可以在多个线程中直接读取,没有任何同步开销
+ * 所有修改方法都会抛出UnsupportedOperationException,即使修改不会产生任何变化
+ *
+ * @author blr
+ */
+final class FrozenMap extends AbstractMap<Object, Object> {
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+
+    private final Object[] keys;
+    private final Object[] values;
+    /**
+     * 下标+1 0为空
+     */
+    private final int[] slots;
+    private final int mask;
+
+    private FrozenMap(Map<?, ?> source) {
+        int size = source.size();
+        this.keys = new Object[size];
+        this.values = new Object[size];
+        int capacity = Integer.highestOneBit(Math.max(size, 2) * 2 - 1) << 1;
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+        int index = 0;
+        for (Map.Entry<?, ?> entry : source.entrySet()) {
+            //并发修改时source的size可能与遍历的数量不同
+            if (index == size)
+                throw new ConcurrentModificationException();
+            Object key = entry.getKey();
+            int slot = hash(key) & mask;
+            while (slots[slot] != 0)
+                slot = (slot + 1) & mask;
+            keys[index] = key;
+            values[index] = entry.getValue();
+            slots[slot] = ++index;
+        }
+        if (index != size)
+            throw new ConcurrentModificationException();
+    }
+
+    static FrozenMap of(Map<?, ?> source) {
+        return source instanceof FrozenMap ? (FrozenMap) source : new FrozenMap(source);
+    }
+
+    private static int hash(Object key) {
+        int h = key == null ? 0 : key.hashCode() * HASH_MULTIPLIER;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return -1: 不存在
+     */
+    private int indexOf(Object key) {
+        int slot = hash(key) & mask;
+        for (int index; (index = slots[slot]) != 0; slot = (slot + 1) & mask) {
+            Object k = keys[index - 1];
+            if (k == key || (key != null && key.equals(k)))
+                return index - 1;
+        }
+        return -1;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : values[index];
+    }
+
+    @Override
+    public Object getOrDefault(Object key, Object defaultValue) {
+        int index = indexOf(key);
+        return index < 0 ? defaultValue : values[index];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super Object, ? super Object> action) {
+        for (int i = 0; i < keys.length; i++)
+            action.accept(keys[i], values[i]);
+    }
+
+    @Override
+    public Set<Entry<Object, Object>> entrySet() {
+        return new AbstractSet<Entry<Object, Object>>() {
+            @Override
+            public Iterator<Entry<Object, Object>> iterator() {
+                return new Iterator<Entry<Object, Object>>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < keys.length;
+                    }
+
+                    @Override
+                    public Entry<Object, Object> next() {
+                        if (next >= keys.length)
+                            throw new NoSuchElementException();
+                        int index = next++;
+                        return new SimpleImmutableEntry<Object, Object>(keys[index], values[index]) {
+                            @Override
+                            public Object setValue(Object value) {
+                                throw frozen();
+                            }
+                        };
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw frozen();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof Map.Entry))
+                    return false;
+                Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+                int index = indexOf(entry.getKey());
+                return index >= 0 && Objects.equals(values[index], entry.getValue());
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                throw frozen();
+            }
+
+            @Override
+            public boolean removeAll(Collection<?> c) {
+                throw frozen();
+            }
+
+            @Override
+            public boolean retainAll(Collection<?> c) {
+                throw frozen();
+            }
+
+            @Override
+            public boolean removeIf(Predicate<? super Entry<Object, Object>> filter) {
+                throw frozen();
+            }
+
+            @Override
+            public void clear() {
+                throw frozen();
+            }
+        };
+    }
+
+    @Override
+    public Set<Object> keySet() {
+        return new AbstractSet<Object>() {
+            @Override
+            public Iterator<Object> iterator() {
+                return new ArrayIterator(keys);
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return indexOf(o) >= 0;
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                throw frozen();
+            }
+
+            @Override
+            public boolean removeAll(Collection<?> c) {
+                throw frozen();
+            }
+
+            @Override
+            public boolean retainAll(Collection<?> c) {
+                throw frozen();
+            }
+
+            @Override
+            public boolean removeIf(Predicate<? super Object> filter) {
+                throw frozen();
+            }
+
+            @Override
+            public void clear() {
+                throw frozen();
+            }
+        };
+    }
+
+    @Override
+    public Collection<Object> values() {
+        return new AbstractCollection<Object>() {
+            @Override
+            public Iterator<Object> iterator() {
+                return new ArrayIterator(values);
+            }
+
+            @Override
+            public int size() {
+                return values.length;
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                throw frozen();
+            }
+
+            @Override
+            public boolean removeAll(Collection<?> c) {
+                throw frozen();
+            }
+
+            @Override
+            public boolean retainAll(Collection<?> c) {
+                throw frozen();
+            }
+
+            @Override
+            public boolean removeIf(Predicate<? super Object> filter) {
+                throw frozen();
+            }
+
+            @Override
+            public void clear() {
+                throw frozen();
+            }
+        };
+    }
+
+    /**
+     * 按顺序遍历keys或values remove抛出UnsupportedOperationException
+     */
+    private static final class ArrayIterator implements Iterator<Object> {
+        private final Object[] array;
+        private int next;
+
+        ArrayIterator(Object[] array) {
+            this.array = array;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < array.length;
+        }
+
+        @Override
+        public Object next() {
+            if (next >= array.length)
+                throw new NoSuchElementException();
+            return array[next++];
+        }
+
+        @Override
+        public void remove() {
+            throw frozen();
+        }
+    }
+
+    private static UnsupportedOperationException frozen() {
+        return new UnsupportedOperationException("PictogramMap is frozen");
+    }
+
+    @Override
+    public Object put(Object key, Object value) {
+        throw frozen();
+    }
+
+    @Override
+    public void putAll(Map<?, ?> m) {
+        throw frozen();
+    }
+
+    @Override
+    public Object remove(Object key) {
+        throw frozen();
+    }
+
+    @Override
+    public void clear() {
+        throw frozen();
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super Object, ? super Object, ?> function) {
+        throw frozen();
+    }
+
+    @Override
+    public Object putIfAbsent(Object key, Object value) {
+        throw frozen();
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        throw frozen();
+    }
+
+    @Override
+    public boolean replace(Object key, Object oldValue, Object newValue) {
+        throw frozen();
+    }
+
+    @Override
+    public Object replace(Object key, Object value) {
+        throw frozen();
+    }
+
+    @Override
+    public Object computeIfAbsent(Object key, Function<? super Object, ?> mappingFunction) {
+        throw frozen();
+    }
+
+    @Override
+    public Object computeIfPresent(Object key, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        throw frozen();
+    }
+
+    @Override
+    public Object compute(Object key, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        throw frozen();
+    }
+
+    @Override
+    public Object merge(Object key, Object value, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        throw frozen();
+    }
+}
@@ -0,0 +1,208 @@
+package com.blr19c.common.collection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoublePredicate;
+import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+
+/**
+ * 多个条件合并为一个 {@link PictogramStream#search(Predicate[])}
+ * 每个元素只遍历一次,按顺序判断所有条件,有一个不满足时不再判断后面的条件
+ * <p>
+ * adaptive为true时随机采样约1/32的元素,统计每个条件的淘汰率和耗时
+ * 每采样32次由一个线程按照 耗时/淘汰率 从小到大重新排序,排序之后统计减半,旧的数据逐渐失效,数据分布变化之后仍然会调整
+ * 统计使用LongAdder,并行流中多个线程同时采样时不会竞争同一个变量
+ * 减半不是原子操作,期间其他线程的采样可能丢失,统计只是近似值(只影响判断的顺序,不影响结果)
+ * 只适用于相互独立且没有副作用的条件,例如第二个条件依赖第一个条件的非null判断时不能使用
+ * <p>
+ * 基本类型的流使用{@link #ofInt} {@link #ofLong} {@link #ofDouble},按照传入的顺序判断,不统计也不调整顺序(统计需要装箱)
+ *
+ * @author blr
+ */
+final class FusedPredicate<T> implements Predicate<T> {
+    private static final int SAMPLE_RATE = 32;
+    private static final int REORDER_SAMPLES = 32;
+
+    private final List<Predicate<? super T>> predicates;
+    private final boolean adaptive;
+    private volatile int[] order;
+    private final LongAdder[] tested;
+    private final LongAdder[] rejected;
+    private final LongAdder[] sampledNanos;
+    /**
+     * 上一次排序之后的采样次数
+     */
+    private final AtomicInteger samples = new AtomicInteger();
+
+    private FusedPredicate(List<Predicate<? super T>> predicates, boolean adaptive) {
+        this.predicates = predicates;
+        this.adaptive = adaptive;
+        int length = predicates.size();
+        this.order = new int[length];
+        for (int i = 0; i < length; i++)
+            order[i] = i;
+        this.tested = newAdders(length);
+        this.rejected = newAdders(length);
+        this.sampledNanos = newAdders(length);
+    }
+
+    /**
+     * 合并predicates
+     *
+     * @param adaptive 是否根据统计调整顺序
+     */
+    static <T> FusedPredicate<T> of(List<? extends Predicate<? super T>> predicates, boolean adaptive) {
+        List<Predicate<? super T>> copy = new ArrayList<>(predicates.size());
+        for (Predicate<? super T> predicate : predicates) {
+            if (predicate == null)
+                throw new IllegalArgumentException("predicate can not be null");
+            copy.add(predicate);
+        }
+        return new FusedPredicate<>(copy, adaptive && copy.size() > 1);
+    }
+
+    /**
+     * 合并int的条件 按照传入的顺序判断
+     */
+    static IntPredicate ofInt(IntPredicate[] predicates) {
+        IntPredicate[] copy = requireNonNull(predicates.clone());
+        return value -> {
+            for (IntPredicate predicate : copy)
+                if (!predicate.test(value))
+                    return false;
+            return true;
+        };
+    }
+
+    /**
+     * 合并long的条件 按照传入的顺序判断
+     */
+    static LongPredicate ofLong(LongPredicate[] predicates) {
+        LongPredicate[] copy = requireNonNull(predicates.clone());
+        return value -> {
+            for (LongPredicate predicate : copy)
+                if (!predicate.test(value))
+                    return false;
+            return true;
+        };
+    }
+
+    /**
+     * 合并double的条件 按照传入的顺序判断
+     */
+    static DoublePredicate ofDouble(DoublePredicate[] predicates) {
+        DoublePredicate[] copy = requireNonNull(predicates.clone());
+        return value -> {
+            for (DoublePredicate predicate : copy)
+                if (!predicate.test(value))
+                    return false;
+            return true;
+        };
+    }
+
+    /**
+     * searchOne的结果校验 size是limit(2)之后的数量
+     */
+    static void requireOne(int size) {
+        if (size == 0)
+            throw new IllegalArgumentException("No results found");
+        if (size != 1)
+            throw new IllegalArgumentException("There is more than one result");
+    }
+
+    private static <P> P[] requireNonNull(P[] predicates) {
+        for (P predicate : predicates)
+            if (predicate == null)
+                throw new IllegalArgumentException("predicate can not be null");
+        return predicates;
+    }
+
+    @Override
+    public boolean test(T t) {
+        if (!adaptive) {
+            for (int i = 0, size = predicates.size(); i < size; i++)
+                if (!predicates.get(i).test(t))
+                    return false;
+            return true;
+        }
+        int[] order = this.order;
+        if (ThreadLocalRandom.current().nextInt(SAMPLE_RATE) != 0) {
+            for (int i : order)
+                if (!predicates.get(i).test(t))
+                    return false;
+            return true;
+        }
+        boolean result = sample(t, order);
+        //只有一个线程能看到等于REORDER_SAMPLES
+        if (samples.incrementAndGet() == REORDER_SAMPLES) {
+            reorder();
+            samples.set(0);
+        }
+        return result;
+    }
+
+    /**
+     * 记录每个条件的耗时和是否淘汰
+     */
+    private boolean sample(T t, int[] order) {
+        for (int i : order) {
+            long start = System.nanoTime();
+            boolean pass = predicates.get(i).test(t);
+            sampledNanos[i].add(System.nanoTime() - start);
+            tested[i].increment();
+            if (!pass) {
+                rejected[i].increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 淘汰一个元素的平均耗时最小的条件放在最前面 排序之后统计减半
+     */
+    private void reorder() {
+        int length = predicates.size();
+        double[] score = new double[length];
+        Integer[] indexes = new Integer[length];
+        for (int i = 0; i < length; i++) {
+            long tested = decay(this.tested[i]);
+            long rejected = decay(this.rejected[i]);
+            long nanos = decay(this.sampledNanos[i]);
+            double rejectRate = (rejected + 1D) / (tested + 2D);
+            double cost = tested == 0 ? 1D : Math.max((double) nanos / tested, 1D);
+            score[i] = cost / rejectRate;
+            indexes[i] = i;
+        }
+        Arrays.sort(indexes, Comparator.comparingDouble(i -> score[i]));
+        int[] order = new int[length];
+        for (int i = 0; i < length; i++)
+            order[i] = indexes[i];
+        this.order = order;
+    }
+
+    /**
+     * 保留一半 sumThenReset和add之间其他线程增加的可能丢失
+     *
+     * @return 减半之前的值
+     */
+    private static long decay(LongAdder adder) {
+        long sum = adder.sumThenReset();
+        adder.add(sum / 2);
+        return sum;
+    }
+
+    private static LongAdder[] newAdders(int length) {
+        LongAdder[] adders = new LongAdder[length];
+        for (int i = 0; i < length; i++)
+            adders[i] = new LongAdder();
+        return adders;
+    }
+}
@@ -0,0 +1,117 @@
+package com.blr19c.common.collection;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * 自动加载的缓存 {@link #getOrLoad(Object)}
+ * 不存在时使用loader加载,同一个key同时只会有一个线程执行loader
+ * 设置{@link #setRefreshAfterWrite(Duration, Executor)}之后
+ * 写入超过指定时间的元素在被读取时会在后台重新加载,读取线程直接返回旧的value
+ *
+ * @author blr
+ */
+public class LoadingCacheHashMap<K, V> extends CacheHashMap<K, V> {
+    private static final long serialVersionUID = 1L;
+
+    private final Function<? super K, ? extends V> loader;
+    private volatile long refreshAfterWriteNanos;
+    private volatile Executor executor;
+
+    public LoadingCacheHashMap(Function<? super K, ? extends V> loader) {
+        this(DeleteStrategyEnum.OLDEST, 64, loader);
+    }
+
+    public LoadingCacheHashMap(DeleteStrategyEnum deleteStrategyEnum, int maximumCapacity,
+                               Function<? super K, ? extends V> loader) {
+        this(maximumCapacity + maximumCapacity / 2, .75F, 16,
+                deleteStrategyEnum, maximumCapacity, 1, false, loader);
+    }
+
+    /**
+     * @param loader 加载不存在的元素 返回null时不会添加
+     * @see CacheHashMap#CacheHashMap(int, float, int, DeleteStrategyEnum, int, int, boolean)
+     */
+    public LoadingCacheHashMap(int initialCapacity, float loadFactor, int concurrencyLevel,
+                               DeleteStrategyEnum deleteStrategyEnum, int maximumCapacity,
+                               int segments, boolean approximateCapacity,
+                               Function<? super K, ? extends V> loader) {
+        super(initialCapacity, loadFactor, concurrencyLevel, deleteStrategyEnum, maximumCapacity,
+                segments, approximateCapacity);
+        this.loader = Objects.requireNonNull(loader);
+    }
+
+    /**
+     * 获取缓存的value,不存在时加载
+     * 需要刷新时在后台重新加载并返回旧的value
+     */
+    public V getOrLoad(K key) {
+        V value = getOrLoad(key, loader);
+        if (value != null && refreshAfterWriteNanos != 0L)
+            refreshIfNeeded(key);
+        return value;
+    }
+
+    /**
+     * 写入之后经过duration,下一次读取时在executor中重新加载
+     * 通常小于{@link #setExpireAfterWrite(Duration)},在过期之前提前刷新热点元素
+     */
+    public void setRefreshAfterWrite(Duration duration, Executor executor) {
+        if (duration == null || duration.isNegative() || duration.isZero())
+            throw new IllegalArgumentException("duration must be positive, actual:" + duration);
+        this.executor = Objects.requireNonNull(executor);
+        this.refreshAfterWriteNanos = duration.toNanos();
+    }
+
+    /**
+     * 使用{@link ForkJoinPool#commonPool()}刷新
+     */
+    public void setRefreshAfterWrite(Duration duration) {
+        setRefreshAfterWrite(duration, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 立即在后台重新加载 正在加载时不会重复加载
+     */
+    public CompletableFuture<V> refresh(K key) {
+        LoadingFuture<V> future = new LoadingFuture<>(null);
+        LoadingFuture<V> loadingFuture = loading.putIfAbsent(key, future);
+        if (loadingFuture != null)
+            return loadingFuture;
+        try {
+            executor().execute(() -> {
+                future.thread = Thread.currentThread();
+                try {
+                    V value = load(key, loader);
+                    if (value != null)
+                        putCache(key, value);
+                    future.complete(value);
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    loading.remove(key, future);
+                }
+            });
+        } catch (RuntimeException e) {
+            //executor拒绝执行
+            loading.remove(key, future);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private void refreshIfNeeded(K key) {
+        Node<K> node = getNode(key);
+        if (node != null && System.nanoTime() - node.writeNanos >= refreshAfterWriteNanos && !loading.containsKey(key))
+            refresh(key);
+    }
+
+    private Executor executor() {
+        Executor executor = this.executor;
+        return executor == null ? ForkJoinPool.commonPool() : executor;
+    }
+}
@@ -0,0 +1,138 @@
+package com.blr19c.common.collection;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.apache.commons.io.FileCleaningTracker;
+import org.apache.commons.io.IOUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
+
+/**
+ * 写入临时文件的Blob/Clob {@link PictogramMap#lobValueToLazy(long)}
+ * 超过阈值的lob不再全部读取到内存中,而是在连接关闭前写入临时文件,使用时再按需读取
+ * 临时文件在LobValue被回收或者调用{@link #close()}之后删除
+ * json序列化时Blob为base64 Clob为字符串 {@link LobValueJsonSerialize}
+ *
+ * @author blr
+ */
+@JsonSerialize(using = LobValueJsonSerialize.class)
+public final class LobValue implements Closeable {
+    private static final FileCleaningTracker TRACKER = new FileCleaningTracker();
+
+    private final File file;
+    /**
+     * Blob为字节数 Clob为字符数
+     */
+    private final long length;
+    private final boolean binary;
+
+    private LobValue(File file, long length, boolean binary) {
+        this.file = file;
+        this.length = length;
+        this.binary = binary;
+        TRACKER.track(file, this);
+    }
+
+    /**
+     * 将blob写入临时文件
+     */
+    static LobValue of(Blob blob) throws SQLException, IOException {
+        File file = Files.createTempFile("blob", ".tmp").toFile();
+        try (InputStream in = blob.getBinaryStream(); OutputStream out = new FileOutputStream(file)) {
+            IOUtils.copyLarge(in, out);
+        } catch (SQLException | IOException | RuntimeException e) {
+            Files.deleteIfExists(file.toPath());
+            throw e;
+        }
+        return new LobValue(file, blob.length(), true);
+    }
+
+    /**
+     * 将clob使用UTF-8写入临时文件
+     */
+    static LobValue of(Clob clob) throws SQLException, IOException {
+        File file = Files.createTempFile("clob", ".tmp").toFile();
+        try (Reader in = clob.getCharacterStream();
+             Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            IOUtils.copyLarge(in, out);
+        } catch (SQLException | IOException | RuntimeException e) {
+            Files.deleteIfExists(file.toPath());
+            throw e;
+        }
+        return new LobValue(file, clob.length(), false);
+    }
+
+    /**
+     * 读取原始的字节 Clob为UTF-8编码
+     */
+    public InputStream getInputStream() throws IOException {
+        return new BufferedInputStream(new FileInputStream(file));
+    }
+
+    /**
+     * 读取字符 Blob按照UTF-8解码
+     */
+    public Reader getReader() throws IOException {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 全部读取为byte[]
+     */
+    public byte[] getBytes() {
+        if (file.length() > Integer.MAX_VALUE - 8)
+            throw new IllegalStateException("lob is too large to read into byte[], length:" + file.length());
+        try {
+            return Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 全部读取为String
+     */
+    public String getString() {
+        if (file.length() > Integer.MAX_VALUE - 8)
+            throw new IllegalStateException("lob is too large to read into String, length:" + file.length());
+        try (Reader reader = getReader()) {
+            return IOUtils.toString(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Blob为字节数 Clob为字符数
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * true: Blob false: Clob
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * 删除临时文件
+     */
+    @Override
+    public void close() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Override
+    public String toString() {
+        return "LobValue{" +
+                "length=" + length +
+                ", binary=" + binary +
+                '}';
+    }
+}
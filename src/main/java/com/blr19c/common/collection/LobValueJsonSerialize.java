@@ -0,0 +1,32 @@
+package com.blr19c.common.collection;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 使LobValue在json序列化时与byte[]/String相同
+ * Blob从临时文件流式写出为base64(TokenBuffer不支持流式写入,读取一次) Clob读取一次写出为字符串
+ *
+ * @author blr
+ */
+public class LobValueJsonSerialize extends JsonSerializer<LobValue> {
+    @Override
+    public void serialize(LobValue value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        if (!value.isBinary()) {
+            gen.writeString(value.getString());
+            return;
+        }
+        if (gen instanceof TokenBuffer) {
+            gen.writeBinary(value.getBytes());
+            return;
+        }
+        try (InputStream in = value.getInputStream()) {
+            gen.writeBinary(in, -1);
+        }
+    }
+}
@@ -2,11 +2,21 @@ package com.blr19c.common.collection;
 
 import org.apache.commons.collections4.MapUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
 import java.util.Map;
 import java.util.Objects;
 
 /**
  * map的通用获取方法
+ * 数字类型的value为Number或者可以解析的字符串 {@link NumberParser}
  */
 public interface MapGetInterface {
 
@@ -27,7 +37,9 @@ public interface MapGetInterface {
      */
     default Byte getByte(Object key, Byte defaultValue) {
         if (Objects.isNull(key)) return defaultValue;
-        return MapUtils.getByteValue(getMap(), key, defaultValue);
+        Number number = NumberParser.toNumber(getMap().get(key));
+        if (number == null) return defaultValue;
+        return number instanceof Byte ? (Byte) number : Byte.valueOf(number.byteValue());
     }
 
     /**
@@ -42,7 +54,8 @@ public interface MapGetInterface {
      */
     default byte getByteValue(Object key, byte defaultValue) {
         if (Objects.isNull(key)) return defaultValue;
-        return MapUtils.getByteValue(getMap(), key, defaultValue);
+        Number number = NumberParser.toNumber(getMap().get(key));
+        return number == null ? defaultValue : number.byteValue();
     }
 
     /**
@@ -87,14 +100,16 @@ public interface MapGetInterface {
      */
     default Short getShort(Object key, Short defaultValue) {
         if (Objects.isNull(key)) return defaultValue;
-        return MapUtils.getShort(getMap(), key, defaultValue);
+        Number number = NumberParser.toNumber(getMap().get(key));
+        if (number == null) return defaultValue;
+        return number instanceof Short ? (Short) number : Short.valueOf(number.shortValue());
     }
 
     /**
      * 获取一个short类型的value
      */
     default short getShortValue(Object key) {
-        return getShort(key, null);
+        return getShortValue(key, (short) 0);
     }
 
     /**
@@ -102,7 +117,8 @@ public interface MapGetInterface {
      */
     default short getShortValue(Object key, short defaultValue) {
         if (Objects.isNull(key)) return defaultValue;
-        return MapUtils.getShortValue(getMap(), key, defaultValue);
+        Number number = NumberParser.toNumber(getMap().get(key));
+        return number == null ? defaultValue : number.shortValue();
     }
 
     /**
@@ -117,7 +133,9 @@ public interface MapGetInterface {
      */
     default Integer getInteger(Object key, Integer defaultValue) {
         if (Objects.isNull(key)) return defaultValue;
-        return MapUtils.getInteger(getMap(), key, defaultValue);
+        Number number = NumberParser.toNumber(getMap().get(key));
+        if (number == null) return defaultValue;
+        return number instanceof Integer ? (Integer) number : Integer.valueOf(number.intValue());
     }
 
     /**
@@ -132,7 +150,8 @@ public interface MapGetInterface {
      */
     default int getIntValue(Object key, int defaultValue) {
         if (Objects.isNull(key)) return defaultValue;
-        return MapUtils.getIntValue(getMap(), key, defaultValue);
+        Number number = NumberParser.toNumber(getMap().get(key));
+        return number == null ? defaultValue : number.intValue();
     }
 
     /**
@@ -147,7 +166,9 @@ public interface MapGetInterface {
      */
     default Float getFloat(Object key, Float defaultValue) {
         if (Objects.isNull(key)) return defaultValue;
-        return MapUtils.getFloat(getMap(), key, defaultValue);
+        Number number = NumberParser.toNumber(getMap().get(key));
+        if (number == null) return defaultValue;
+        return number instanceof Float ? (Float) number : Float.valueOf(number.floatValue());
     }
 
     /**
@@ -162,7 +183,8 @@ public interface MapGetInterface {
      */
     default float getFloatValue(Object key, float defaultValue) {
         if (Objects.isNull(key)) return defaultValue;
-        return MapUtils.getFloatValue(getMap(), key, defaultValue);
+        Number number = NumberParser.toNumber(getMap().get(key));
+        return number == null ? defaultValue : number.floatValue();
     }
 
     /**
@@ -177,7 +199,9 @@ public interface MapGetInterface {
      */
     default Long getLong(Object key, Long defaultValue) {
         if (Objects.isNull(key)) return defaultValue;
-        return MapUtils.getLong(getMap(), key, defaultValue);
+        Number number = NumberParser.toNumber(getMap().get(key));
+        if (number == null) return defaultValue;
+        return number instanceof Long ? (Long) number : Long.valueOf(number.longValue());
     }
 
     /**
@@ -192,7 +216,8 @@ public interface MapGetInterface {
      */
     default long getLongValue(Object key, long defaultValue) {
         if (Objects.isNull(key)) return defaultValue;
-        return MapUtils.getLongValue(getMap(), key, defaultValue);
+        Number number = NumberParser.toNumber(getMap().get(key));
+        return number == null ? defaultValue : number.longValue();
     }
 
     /**
@@ -207,7 +232,9 @@ public interface MapGetInterface {
      */
     default Double getDouble(Object key, Double defaultValue) {
         if (Objects.isNull(key)) return defaultValue;
-        return MapUtils.getDouble(getMap(), key, defaultValue);
+        Number number = NumberParser.toNumber(getMap().get(key));
+        if (number == null) return defaultValue;
+        return number instanceof Double ? (Double) number : Double.valueOf(number.doubleValue());
     }
 
     /**
@@ -222,7 +249,8 @@ public interface MapGetInterface {
      */
     default double getDoubleValue(Object key, double defaultValue) {
         if (Objects.isNull(key)) return defaultValue;
-        return MapUtils.getDoubleValue(getMap(), key, defaultValue);
+        Number number = NumberParser.toNumber(getMap().get(key));
+        return number == null ? defaultValue : number.doubleValue();
     }
 
     /**
@@ -237,9 +265,64 @@ public interface MapGetInterface {
      */
     default String getString(Object key, String defaultValue) {
         if (Objects.isNull(key)) return defaultValue;
+        Object value = getMap().get(key);
+        if (value instanceof LobValue) return ((LobValue) value).getString();
         return MapUtils.getString(getMap(), key, defaultValue);
     }
 
+    /**
+     * 获取一个byte[]类型的value 支持byte[] Blob CharSequence(UTF-8编码) {@link LobValue}
+     * 其他类型抛出IllegalArgumentException
+     */
+    default byte[] getBytes(Object key) {
+        if (Objects.isNull(key)) return null;
+        Object value = getMap().get(key);
+        if (value == null || value instanceof byte[]) return (byte[]) value;
+        if (value instanceof LobValue) return ((LobValue) value).getBytes();
+        if (value instanceof Blob) return (byte[]) PictogramTransform.BLOB_TO_BYTES.apply(value);
+        if (value instanceof CharSequence) return value.toString().getBytes(StandardCharsets.UTF_8);
+        throw new IllegalArgumentException("key:" + key + " can not be read as byte[], actual:" + value.getClass().getName());
+    }
+
+    /**
+     * 按需读取value 支持byte[] Blob InputStream CharSequence(UTF-8编码) {@link LobValue}
+     * 其他类型抛出IllegalArgumentException
+     */
+    default InputStream getInputStream(Object key) {
+        if (Objects.isNull(key)) return null;
+        Object value = getMap().get(key);
+        try {
+            if (value == null || value instanceof InputStream) return (InputStream) value;
+            if (value instanceof LobValue) return ((LobValue) value).getInputStream();
+            if (value instanceof Blob) return ((Blob) value).getBinaryStream();
+            if (value instanceof byte[]) return new ByteArrayInputStream((byte[]) value);
+            if (value instanceof CharSequence)
+                return new ByteArrayInputStream(value.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException | SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        throw new IllegalArgumentException("key:" + key + " can not be read as InputStream, actual:" + value.getClass().getName());
+    }
+
+    /**
+     * 按需读取value 支持CharSequence Clob Reader byte[](UTF-8解码) {@link LobValue}
+     * 其他类型抛出IllegalArgumentException
+     */
+    default Reader getReader(Object key) {
+        if (Objects.isNull(key)) return null;
+        Object value = getMap().get(key);
+        try {
+            if (value == null || value instanceof Reader) return (Reader) value;
+            if (value instanceof LobValue) return ((LobValue) value).getReader();
+            if (value instanceof Clob) return ((Clob) value).getCharacterStream();
+            if (value instanceof CharSequence) return new StringReader(value.toString());
+            if (value instanceof byte[]) return new StringReader(new String((byte[]) value, StandardCharsets.UTF_8));
+        } catch (IOException | SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        throw new IllegalArgumentException("key:" + key + " can not be read as Reader, actual:" + value.getClass().getName());
+    }
+
     /**
      * 获取一个任意类型的value
      */
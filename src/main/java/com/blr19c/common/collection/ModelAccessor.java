@@ -0,0 +1,270 @@
+package com.blr19c.common.collection;
+
+import com.blr19c.common.code.ReflectionUtils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.*;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 实体类的访问方式 {@link PictogramMap#toModel(Class, PictogramMap.Recognizer, boolean, boolean)}
+ * 每个类只解析一次并缓存在{@link ClassValue}中,之后的转换不再调用Introspector和setAccessible
+ * 公开的构造函数 getter setter使用{@link LambdaMetafactory}生成的lambda调用,与直接调用几乎相同
+ * 字段和非公开的方法使用{@link MethodHandle}调用
+ *
+ * @author blr
+ */
+final class ModelAccessor {
+    private static final ClassValue<ModelAccessor> ACCESSORS = new ClassValue<ModelAccessor>() {
+        @Override
+        protected ModelAccessor computeValue(Class<?> type) {
+            return new ModelAccessor(type);
+        }
+    };
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final Class<?> type;
+    /**
+     * 第一次使用时才解析
+     */
+    private volatile Supplier<Object> constructor;
+    private volatile Property[] readProperties, writeProperties, fields;
+
+    private ModelAccessor(Class<?> type) {
+        this.type = type;
+    }
+
+    static ModelAccessor of(Class<?> type) {
+        return ACCESSORS.get(type);
+    }
+
+    /**
+     * 使用公开的无参构造函数创建实例
+     */
+    Object newInstance() {
+        Supplier<Object> constructor = this.constructor;
+        if (constructor == null)
+            this.constructor = constructor = constructor();
+        return constructor.get();
+    }
+
+    /**
+     * 有getter的属性 不包括Object的方法
+     */
+    Property[] readProperties() {
+        Property[] properties = readProperties;
+        if (properties == null)
+            readProperties = properties = properties(true);
+        return properties;
+    }
+
+    /**
+     * 有setter的属性 不包括Object的方法
+     */
+    Property[] writeProperties() {
+        Property[] properties = writeProperties;
+        if (properties == null)
+            writeProperties = properties = properties(false);
+        return properties;
+    }
+
+    /**
+     * 包括父类在内的所有非静态字段 子类的字段在前
+     */
+    Property[] fields() {
+        Property[] fields = this.fields;
+        if (fields == null)
+            this.fields = fields = fieldProperties();
+        return fields;
+    }
+
+    private Supplier<Object> constructor() {
+        Constructor<?> constructor;
+        try {
+            constructor = type.getConstructor();
+        } catch (NoSuchMethodException e) {
+            //与原来一样每次调用时抛出异常
+            return () -> {
+                ReflectionUtils.handleReflectionException(e);
+                throw new IllegalStateException("Should never get here");
+            };
+        }
+        try {
+            MethodHandle handle = LOOKUP.unreflectConstructor(constructor);
+            if (isLinkable(constructor))
+                return (Supplier<Object>) LambdaMetafactory.metafactory(LOOKUP, "get",
+                        MethodType.methodType(Supplier.class), MethodType.methodType(Object.class),
+                        handle, handle.type()).getTarget().invokeExact();
+            MethodHandle generic = handle.asType(MethodType.methodType(Object.class));
+            return () -> {
+                try {
+                    return generic.invokeExact();
+                } catch (Throwable e) {
+                    ReflectionUtils.rethrowRuntimeException(e);
+                    throw new IllegalStateException("Should never get here");
+                }
+            };
+        } catch (Throwable e) {
+            ReflectionUtils.rethrowRuntimeException(e);
+            throw new IllegalStateException("Should never get here");
+        }
+    }
+
+    private Property[] properties(boolean read) {
+        List<Property> properties = new ArrayList<>();
+        for (PropertyDescriptor descriptor : ReflectionUtils.getPropertyDescriptors(type, null)) {
+            Method method = read ? descriptor.getReadMethod() : descriptor.getWriteMethod();
+            if (method == null || ReflectionUtils.isObjectMethod(method))
+                continue;
+            properties.add(read ? readProperty(descriptor) : writeProperty(descriptor));
+        }
+        return properties.toArray(new Property[0]);
+    }
+
+    /**
+     * 使用descriptor的getter
+     */
+    static Property readProperty(PropertyDescriptor descriptor) {
+        Method method = descriptor.getReadMethod();
+        try {
+            return new Property(descriptor.getName(), descriptor.getPropertyType(), method.getDeclaringClass(), getter(method), null);
+        } catch (Throwable e) {
+            ReflectionUtils.rethrowRuntimeException(e);
+            throw new IllegalStateException("Should never get here");
+        }
+    }
+
+    /**
+     * 使用descriptor的setter 返回值不是void的链式setter也可以使用
+     */
+    static Property writeProperty(PropertyDescriptor descriptor) {
+        Method method = descriptor.getWriteMethod();
+        try {
+            return new Property(descriptor.getName(), descriptor.getPropertyType(), method.getDeclaringClass(), null, setter(method));
+        } catch (Throwable e) {
+            ReflectionUtils.rethrowRuntimeException(e);
+            throw new IllegalStateException("Should never get here");
+        }
+    }
+
+    private Property[] fieldProperties() {
+        List<Property> fields = new ArrayList<>();
+        ReflectionUtils.doWithFields(type, field -> {
+            ReflectionUtils.makeAccessible(field);
+            MethodHandle getter = LOOKUP.unreflectGetter(field)
+                    .asType(MethodType.methodType(Object.class, Object.class));
+            MethodHandle setter = Modifier.isFinal(field.getModifiers()) ? null : LOOKUP.unreflectSetter(field)
+                    .asType(MethodType.methodType(void.class, Object.class, Object.class));
+            fields.add(new Property(field.getName(), field.getType(), field.getDeclaringClass(),
+                    getter(getter), setter == null ? null : setter(setter)));
+        }, field -> !Modifier.isStatic(field.getModifiers()));
+        return fields.toArray(new Property[0]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> getter(Method method) throws Throwable {
+        ReflectionUtils.makeAccessible(method);
+        MethodHandle handle = LOOKUP.unreflect(method);
+        if (isLinkable(method))
+            return (Function<Object, Object>) LambdaMetafactory.metafactory(LOOKUP, "apply",
+                    MethodType.methodType(Function.class), MethodType.methodType(Object.class, Object.class),
+                    handle, handle.type().wrap()).getTarget().invokeExact();
+        return getter(handle.asType(MethodType.methodType(Object.class, Object.class)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> setter(Method method) throws Throwable {
+        ReflectionUtils.makeAccessible(method);
+        MethodHandle handle = LOOKUP.unreflect(method);
+        if (isLinkable(method))
+            return (BiConsumer<Object, Object>) LambdaMetafactory.metafactory(LOOKUP, "accept",
+                    MethodType.methodType(BiConsumer.class), MethodType.methodType(void.class, Object.class, Object.class),
+                    handle, handle.type().wrap().changeReturnType(void.class)).getTarget().invokeExact();
+        return setter(handle.asType(MethodType.methodType(void.class, Object.class, Object.class)));
+    }
+
+    private static Function<Object, Object> getter(MethodHandle handle) {
+        return bean -> {
+            try {
+                return handle.invokeExact(bean);
+            } catch (Throwable e) {
+                ReflectionUtils.rethrowRuntimeException(e);
+                throw new IllegalStateException("Should never get here");
+            }
+        };
+    }
+
+    private static BiConsumer<Object, Object> setter(MethodHandle handle) {
+        return (bean, value) -> {
+            try {
+                handle.invokeExact(bean, value);
+            } catch (Throwable e) {
+                ReflectionUtils.rethrowRuntimeException(e);
+            }
+        };
+    }
+
+    /**
+     * 生成的lambda只能调用公开的方法,并且类需要对当前类加载器可见
+     */
+    private static boolean isLinkable(Member member) {
+        Class<?> declaringClass = member.getDeclaringClass();
+        if (!Modifier.isPublic(member.getModifiers()) || !Modifier.isPublic(declaringClass.getModifiers()))
+            return false;
+        try {
+            return Class.forName(declaringClass.getName(), false, ModelAccessor.class.getClassLoader()) == declaringClass;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * 一个属性或字段
+     */
+    static final class Property {
+        final String name;
+        /**
+         * 忽略大小写查找时使用 每个类只计算一次
+         */
+        final String lowerName;
+        final Class<?> type;
+        final Class<?> declaringClass;
+        private final Function<Object, Object> getter;
+        private final BiConsumer<Object, Object> setter;
+
+        Property(String name, Class<?> type, Class<?> declaringClass,
+                 Function<Object, Object> getter, BiConsumer<Object, Object> setter) {
+            this.name = name;
+            this.lowerName = name.toLowerCase(Locale.ROOT);
+            this.type = type;
+            this.declaringClass = declaringClass;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        Object get(Object bean) {
+            return getter.apply(bean);
+        }
+
+        void set(Object bean, Object value) {
+            setter.accept(bean, value);
+        }
+
+        /**
+         * final字段不能修改
+         */
+        boolean isWritable() {
+            return setter != null;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.blr19c.common.collection;
+
+import com.baomidou.mybatisplus.core.toolkit.StringUtils;
+import com.blr19c.common.code.ReflectionUtils;
+import org.springframework.beans.BeanUtils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 实体和map之间的转换 每个类只创建一次 {@link #of(Class)}
+ * 公开的类在运行时生成专用的子类(字节码直接调用构造函数 getter setter),没有任何反射调用
+ * 无法生成时(非公开的类 没有公开的无参构造函数等)使用{@link ModelAccessor}
+ * <p>
+ * map转实体时依次查找 属性名 下划线小写 下划线大写(userName user_name USER_NAME)
+ * 基本类型的属性由Number/Boolean/Character拆箱,value为null时不设置
+ * 返回this的链式setter(setName(String)返回实体)也会使用,没有set前缀的方法不是属性
+ *
+ * @author blr
+ */
+public abstract class ModelMapper<T> {
+    private static final ClassValue<ModelMapper<?>> MAPPERS = new ClassValue<ModelMapper<?>>() {
+        @Override
+        protected ModelMapper<?> computeValue(Class<?> type) {
+            ModelMapper<?> mapper = ModelMapperGenerator.generate(type);
+            return mapper == null ? new ReflectiveModelMapper<>(type) : mapper;
+        }
+    };
+
+    protected ModelMapper() {
+    }
+
+    /**
+     * 获取type的转换器
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ModelMapper<T> of(Class<T> type) {
+        return (ModelMapper<T>) MAPPERS.get(Objects.requireNonNull(type));
+    }
+
+    /**
+     * map转为实体 使用属性名和下划线别名查找
+     */
+    public T toModel(Map<?, ?> map) {
+        return toModel(map, null);
+    }
+
+    /**
+     * map转为实体
+     *
+     * @param recognizer 不为null时使用recognizer查找value,不再使用下划线别名
+     */
+    public abstract T toModel(Map<?, ?> map, PictogramMap.Recognizer<Map<Object, Object>, String, Object> recognizer);
+
+    /**
+     * 实体的所有getter放入map
+     */
+    public abstract void toMap(T model, Map<Object, Object> map);
+
+    /**
+     * 查找属性的value
+     *
+     * @param lowerAlias 下划线小写的别名 与name相同时为null
+     * @param upperAlias 下划线大写的别名 与name相同时为null
+     */
+    @SuppressWarnings("unchecked")
+    protected final Object value(Map<?, ?> map, PictogramMap.Recognizer<Map<Object, Object>, String, Object> recognizer,
+                                 String name, String lowerAlias, String upperAlias) {
+        if (recognizer != null)
+            return recognizer.test((Map<Object, Object>) map, name);
+        Object value = map.get(name);
+        if (value == null && lowerAlias != null)
+            value = map.get(lowerAlias);
+        if (value == null && upperAlias != null)
+            value = map.get(upperAlias);
+        return value;
+    }
+
+    /**
+     * 属性的getter和setter
+     * 使用spring的{@link BeanUtils#getPropertyDescriptors(Class)},Introspector会忽略返回值不是void的setter
+     */
+    static PropertyDescriptor[] propertyDescriptors(Class<?> type) {
+        return BeanUtils.getPropertyDescriptors(type);
+    }
+
+    /**
+     * 下划线小写的别名 与name相同时为null
+     */
+    static String lowerAlias(String name) {
+        String alias = StringUtils.camelToUnderline(name);
+        return alias.equals(name) ? null : alias;
+    }
+
+    /**
+     * 下划线大写的别名 与name相同时为null
+     */
+    static String upperAlias(String name) {
+        String alias = StringUtils.camelToUnderline(name).toUpperCase();
+        return alias.equals(name) ? null : alias;
+    }
+
+    /**
+     * 与生成的字节码相同的转换 基本类型拆箱,其他类型强转
+     */
+    static Object convert(Class<?> type, Object value) {
+        if (!type.isPrimitive())
+            return type.cast(value);
+        if (type == boolean.class)
+            return (Boolean) value;
+        if (type == char.class)
+            return (Character) value;
+        Number number = (Number) value;
+        if (type == int.class)
+            return number.intValue();
+        if (type == long.class)
+            return number.longValue();
+        if (type == double.class)
+            return number.doubleValue();
+        if (type == float.class)
+            return number.floatValue();
+        if (type == short.class)
+            return number.shortValue();
+        return number.byteValue();
+    }
+
+    /**
+     * 无法生成字节码时使用缓存的{@link ModelAccessor}
+     * 属性与生成的转换器相同 {@link #propertyDescriptors(Class)}
+     */
+    static class ReflectiveModelMapper<T> extends ModelMapper<T> {
+        private final ModelAccessor accessor;
+        private final ModelAccessor.Property[] readers;
+        private final ModelAccessor.Property[] writers;
+        private final String[][] aliases;
+
+        ReflectiveModelMapper(Class<T> type) {
+            this.accessor = ModelAccessor.of(type);
+            List<ModelAccessor.Property> readers = new ArrayList<>();
+            List<ModelAccessor.Property> writers = new ArrayList<>();
+            for (PropertyDescriptor descriptor : propertyDescriptors(type)) {
+                Method readMethod = descriptor.getReadMethod();
+                Method writeMethod = descriptor.getWriteMethod();
+                if (readMethod != null && !ReflectionUtils.isObjectMethod(readMethod))
+                    readers.add(ModelAccessor.readProperty(descriptor));
+                if (writeMethod != null && !ReflectionUtils.isObjectMethod(writeMethod))
+                    writers.add(ModelAccessor.writeProperty(descriptor));
+            }
+            this.readers = readers.toArray(new ModelAccessor.Property[0]);
+            this.writers = writers.toArray(new ModelAccessor.Property[0]);
+            this.aliases = new String[this.writers.length][];
+            for (int i = 0; i < this.writers.length; i++)
+                aliases[i] = new String[]{lowerAlias(this.writers[i].name), upperAlias(this.writers[i].name)};
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T toModel(Map<?, ?> map, PictogramMap.Recognizer<Map<Object, Object>, String, Object> recognizer) {
+            T model = (T) accessor.newInstance();
+            for (int i = 0; i < writers.length; i++) {
+                ModelAccessor.Property property = writers[i];
+                Object value = value(map, recognizer, property.name, aliases[i][0], aliases[i][1]);
+                if (value != null)
+                    property.set(model, convert(property.type, value));
+            }
+            return model;
+        }
+
+        @Override
+        public void toMap(T model, Map<Object, Object> map) {
+            for (ModelAccessor.Property property : readers)
+                map.put(property.name, property.get(model));
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.blr19c.common.collection;
+
+import com.blr19c.common.code.ReflectionUtils;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.Label;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+import org.springframework.cglib.core.ReflectUtils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 使用asm(spring-core中重新打包的版本)为实体类生成{@link ModelMapper}的子类
+ * 生成的类与实体类在同一个包和类加载器中,直接调用构造函数 getter setter
+ * 只在{@link ModelMapper#of(Class)}的ClassValue中调用,并发生成同一个类时重复定义失败的一方使用反射
+ *
+ * @author blr
+ */
+class ModelMapperGenerator implements Opcodes {
+    private static final String MAPPER = Type.getInternalName(ModelMapper.class);
+    private static final String MAP = Type.getInternalName(Map.class);
+    private static final String RECOGNIZER = Type.getInternalName(PictogramMap.Recognizer.class);
+    private static final String OBJECT = Type.getInternalName(Object.class);
+    private static final String STRING_DESCRIPTOR = Type.getDescriptor(String.class);
+    private static final String VALUE_DESCRIPTOR = "(L" + MAP + ";L" + RECOGNIZER + ";"
+            + STRING_DESCRIPTOR + STRING_DESCRIPTOR + STRING_DESCRIPTOR + ")L" + OBJECT + ";";
+
+    private ModelMapperGenerator() {
+    }
+
+    /**
+     * 生成type的转换器
+     *
+     * @return null: 无法生成
+     */
+    static ModelMapper<?> generate(Class<?> type) {
+        if (!isGeneratable(type))
+            return null;
+        List<PropertyDescriptor> readers = new ArrayList<>();
+        List<PropertyDescriptor> writers = new ArrayList<>();
+        for (PropertyDescriptor descriptor : ModelMapper.propertyDescriptors(type)) {
+            Method readMethod = descriptor.getReadMethod();
+            Method writeMethod = descriptor.getWriteMethod();
+            if (readMethod != null && !ReflectionUtils.isObjectMethod(readMethod))
+                readers.add(descriptor);
+            if (writeMethod != null && !ReflectionUtils.isObjectMethod(writeMethod))
+                writers.add(descriptor);
+            //生成的类无法强转为非公开的类型
+            if ((readMethod != null || writeMethod != null) && !isPublic(descriptor.getPropertyType()))
+                return null;
+        }
+        String className = type.getName() + "$$ModelMapper";
+        try {
+            byte[] bytes = generate(className.replace('.', '/'), Type.getInternalName(type), readers, writers);
+            Class<?> mapperClass = ReflectUtils.defineClass(className, bytes, type.getClassLoader(),
+                    type.getProtectionDomain(), type);
+            return (ModelMapper<?>) mapperClass.getConstructor().newInstance();
+        } catch (Exception | LinkageError e) {
+            //例如类加载器或模块不允许定义新的类
+            return null;
+        }
+    }
+
+    /**
+     * 公开的具体类 有公开的无参构造函数 并且可以在它的类加载器中找到ModelMapper
+     */
+    private static boolean isGeneratable(Class<?> type) {
+        int modifiers = type.getModifiers();
+        if (!Modifier.isPublic(modifiers) || Modifier.isAbstract(modifiers) || type.isInterface()
+                || type.isArray() || type.isPrimitive() || type.getName().startsWith("java."))
+            return false;
+        try {
+            type.getConstructor();
+            //嵌套类还需要外部类是公开的
+            return isPublic(type) && type.getClassLoader() != null &&
+                    Class.forName(ModelMapper.class.getName(), false, type.getClassLoader()) == ModelMapper.class;
+        } catch (NoSuchMethodException | ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static boolean isPublic(Class<?> type) {
+        while (type.isArray())
+            type = type.getComponentType();
+        for (Class<?> c = type; c != null; c = c.getEnclosingClass())
+            if (!c.isPrimitive() && !Modifier.isPublic(c.getModifiers()))
+                return false;
+        return true;
+    }
+
+    private static byte[] generate(String className, String modelName,
+                                   List<PropertyDescriptor> readers, List<PropertyDescriptor> writers) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                //只会合并相同类型的局部变量
+                return OBJECT;
+            }
+        };
+        cw.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, className, null, MAPPER, null);
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, MAPPER, "<init>", "()V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        generateToModel(cw, modelName, writers);
+        generateToMap(cw, modelName, readers);
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * model = new Model();
+     * value = value(map, recognizer, "name", "lower", "UPPER");
+     * if (value != null) model.setName((Type) value);
+     * ...
+     */
+    private static void generateToModel(ClassWriter cw, String modelName, List<PropertyDescriptor> writers) {
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "toModel",
+                "(L" + MAP + ";L" + RECOGNIZER + ";)L" + OBJECT + ";", null, null);
+        mv.visitCode();
+        mv.visitTypeInsn(NEW, modelName);
+        mv.visitInsn(DUP);
+        mv.visitMethodInsn(INVOKESPECIAL, modelName, "<init>", "()V", false);
+        mv.visitVarInsn(ASTORE, 3);
+        for (PropertyDescriptor descriptor : writers) {
+            String name = descriptor.getName();
+            Method writeMethod = descriptor.getWriteMethod();
+            Class<?> propertyType = writeMethod.getParameterTypes()[0];
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitLdcInsn(name);
+            ldcOrNull(mv, ModelMapper.lowerAlias(name));
+            ldcOrNull(mv, ModelMapper.upperAlias(name));
+            mv.visitMethodInsn(INVOKEVIRTUAL, MAPPER, "value", VALUE_DESCRIPTOR, false);
+            mv.visitVarInsn(ASTORE, 4);
+            Label skip = new Label();
+            mv.visitVarInsn(ALOAD, 4);
+            mv.visitJumpInsn(IFNULL, skip);
+            mv.visitVarInsn(ALOAD, 3);
+            mv.visitVarInsn(ALOAD, 4);
+            unbox(mv, propertyType);
+            mv.visitMethodInsn(INVOKEVIRTUAL, modelName, writeMethod.getName(),
+                    Type.getMethodDescriptor(writeMethod), false);
+            //链式调用的setter
+            Class<?> returnType = writeMethod.getReturnType();
+            if (returnType == long.class || returnType == double.class)
+                mv.visitInsn(POP2);
+            else if (returnType != void.class)
+                mv.visitInsn(POP);
+            mv.visitLabel(skip);
+        }
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * model = (Model) object;
+     * map.put("name", model.getName());
+     * ...
+     */
+    private static void generateToMap(ClassWriter cw, String modelName, List<PropertyDescriptor> readers) {
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "toMap", "(L" + OBJECT + ";L" + MAP + ";)V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitTypeInsn(CHECKCAST, modelName);
+        mv.visitVarInsn(ASTORE, 3);
+        for (PropertyDescriptor descriptor : readers) {
+            Method readMethod = descriptor.getReadMethod();
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitLdcInsn(descriptor.getName());
+            mv.visitVarInsn(ALOAD, 3);
+            mv.visitMethodInsn(INVOKEVIRTUAL, modelName, readMethod.getName(),
+                    Type.getMethodDescriptor(readMethod), false);
+            box(mv, readMethod.getReturnType());
+            mv.visitMethodInsn(INVOKEINTERFACE, MAP, "put",
+                    "(L" + OBJECT + ";L" + OBJECT + ";)L" + OBJECT + ";", true);
+            mv.visitInsn(POP);
+        }
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void ldcOrNull(MethodVisitor mv, String value) {
+        if (value == null)
+            mv.visitInsn(ACONST_NULL);
+        else
+            mv.visitLdcInsn(value);
+    }
+
+    /**
+     * 与{@link ModelMapper#convert(Class, Object)}相同 基本类型拆箱,其他类型强转
+     */
+    private static void unbox(MethodVisitor mv, Class<?> type) {
+        if (type == Object.class)
+            return;
+        if (!type.isPrimitive()) {
+            mv.visitTypeInsn(CHECKCAST, Type.getInternalName(type));
+            return;
+        }
+        if (type == boolean.class) {
+            mv.visitTypeInsn(CHECKCAST, "java/lang/Boolean");
+            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Boolean", "booleanValue", "()Z", false);
+        } else if (type == char.class) {
+            mv.visitTypeInsn(CHECKCAST, "java/lang/Character");
+            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Character", "charValue", "()C", false);
+        } else {
+            Type primitive = Type.getType(type);
+            mv.visitTypeInsn(CHECKCAST, "java/lang/Number");
+            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Number", type.getName() + "Value",
+                    "()" + primitive.getDescriptor(), false);
+        }
+    }
+
+    private static void box(MethodVisitor mv, Class<?> type) {
+        if (!type.isPrimitive())
+            return;
+        Type primitive = Type.getType(type);
+        String wrapper = wrapper(type);
+        mv.visitMethodInsn(INVOKESTATIC, wrapper, "valueOf",
+                "(" + primitive.getDescriptor() + ")L" + wrapper + ";", false);
+    }
+
+    private static String wrapper(Class<?> type) {
+        if (type == boolean.class)
+            return "java/lang/Boolean";
+        if (type == char.class)
+            return "java/lang/Character";
+        if (type == int.class)
+            return "java/lang/Integer";
+        if (type == long.class)
+            return "java/lang/Long";
+        if (type == double.class)
+            return "java/lang/Double";
+        if (type == float.class)
+            return "java/lang/Float";
+        if (type == short.class)
+            return "java/lang/Short";
+        return "java/lang/Byte";
+    }
+}
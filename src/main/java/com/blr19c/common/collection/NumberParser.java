@@ -0,0 +1,132 @@
+package com.blr19c.common.collection;
+
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.text.ParseException;
+
+/**
+ * {@link MapGetInterface}数字类型的转换 转换后的数值与{@link org.apache.commons.collections4.MapUtils#getNumber}相同
+ * 整数和普通的小数直接解析,不再每次创建NumberFormat
+ * 其他格式(分组符号 指数 后缀等)仍然使用NumberFormat,只有这部分的结果按照String缓存
+ * 不是数字的String也会缓存,重复获取时不再解析
+ *
+ * @author blr
+ */
+final class NumberParser {
+    /**
+     * 只有默认区域的符号与直接解析相同时才直接解析
+     */
+    private static final boolean STANDARD_SYMBOLS;
+    private static final int MAX_LONG_DIGITS = 18;
+    private static final int FORMAT_CACHE_CAPACITY = 4096;
+    /**
+     * NumberFormat无法解析的String 缓存中的value不能为null
+     */
+    static final Object NOT_NUMBER = new Object();
+    /**
+     * 按照cpu核数分段,未命中时不会竞争同一个锁
+     */
+    static final CacheHashMap<String, Object> FORMAT_PARSED =
+            new CacheHashMap<>(FORMAT_CACHE_CAPACITY + FORMAT_CACHE_CAPACITY / 2, .75F, 16,
+                    CacheHashMap.DeleteStrategyEnum.OLDEST, FORMAT_CACHE_CAPACITY,
+                    Runtime.getRuntime().availableProcessors(), true);
+
+    static {
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance();
+        STANDARD_SYMBOLS = symbols.getDecimalSeparator() == '.' && symbols.getMinusSign() == '-'
+                && symbols.getZeroDigit() == '0';
+    }
+
+    private NumberParser() {
+    }
+
+    /**
+     * value转为数字
+     *
+     * @return null: 不是数字
+     */
+    static Number toNumber(Object value) {
+        if (value instanceof Number)
+            return (Number) value;
+        if (!(value instanceof CharSequence) || ((CharSequence) value).length() == 0)
+            return null;
+        CharSequence chars = (CharSequence) value;
+        if (STANDARD_SYMBOLS) {
+            Number number = parseLong(chars);
+            if (number != null)
+                return number;
+            int point = decimalPoint(chars);
+            if (point > 0) {
+                if (!isIntegral(chars, point))
+                    return Double.parseDouble(chars.toString());
+                //与NumberFormat相同 小数部分都是0时为Long(超出18位时使用NumberFormat,不能转为double丢失精度)
+                number = parseLong(chars.subSequence(0, point));
+                if (number != null)
+                    return number;
+            }
+        }
+        Object parsed = FORMAT_PARSED.getOrLoad(chars.toString(), NumberParser::parseFormat);
+        return parsed == NOT_NUMBER ? null : (Number) parsed;
+    }
+
+    /**
+     * 只有-和数字的整数
+     *
+     * @return null: 不是整数或者超出18位
+     */
+    private static Number parseLong(CharSequence chars) {
+        int length = chars.length();
+        boolean negative = chars.charAt(0) == '-';
+        int start = negative ? 1 : 0;
+        if (length == start || length - start > MAX_LONG_DIGITS)
+            return null;
+        long value = 0;
+        for (int i = start; i < length; i++) {
+            int digit = chars.charAt(i) - '0';
+            if (digit < 0 || digit > 9)
+                return null;
+            value = value * 10 + digit;
+        }
+        //与NumberFormat相同 -0为Double
+        if (negative)
+            return value == 0 ? (Number) (-0D) : (Number) (-value);
+        return value;
+    }
+
+    private static Object parseFormat(String string) {
+        try {
+            return NumberFormat.getInstance().parse(string);
+        } catch (ParseException e) {
+            return NOT_NUMBER;
+        }
+    }
+
+    /**
+     * 只有-和数字,并且小数点前后都有数字
+     *
+     * @return 小数点的下标 -1: 不是小数
+     */
+    private static int decimalPoint(CharSequence chars) {
+        int length = chars.length();
+        int i = chars.charAt(0) == '-' ? 1 : 0;
+        int point = -1;
+        for (int start = i; i < length; i++) {
+            char c = chars.charAt(i);
+            if (c == '.' && point < 0 && i > start)
+                point = i;
+            else if (c < '0' || c > '9')
+                return -1;
+        }
+        return point > 0 && point < length - 1 ? point : -1;
+    }
+
+    /**
+     * 小数部分都是0
+     */
+    private static boolean isIntegral(CharSequence chars, int point) {
+        for (int i = point + 1; i < chars.length(); i++)
+            if (chars.charAt(i) != '0')
+                return false;
+        return true;
+    }
+}
@@ -0,0 +1,221 @@
+package com.blr19c.common.collection;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * value保存在堆外内存的缓存 大量缓存数据不再占用老年代
+ * value序列化之后保存在{@link SlabAllocator}申请的DirectByteBuffer中,堆上只保留key到块位置的索引
+ * 删除策略 过期 加载与{@link CacheHashMap}相同,被删除的块直接回到空闲链表,不需要GC回收
+ * 每次读取都会反序列化出新的对象,修改读取到的对象不会影响缓存
+ *
+ * @author blr
+ */
+public class OffHeapCacheHashMap<K, V> {
+    /**
+     * 默认每个slab 1MB
+     */
+    public static final int DEFAULT_SLAB_SIZE = 1 << 20;
+
+    private final SlabAllocator allocator;
+    private final Codec<V> codec;
+    /**
+     * key到块位置的索引 块的大小作为重量,总重量不超过maximumBytes
+     */
+    private final CacheHashMap<K, SlabAllocator.Slot> cache;
+
+    /**
+     * 使用{@link PictogramMap}默认的ObjectMapper序列化
+     */
+    public OffHeapCacheHashMap(CacheHashMap.DeleteStrategyEnum deleteStrategyEnum, int maximumCapacity,
+                               long maximumBytes, Class<V> valueType) {
+        this(deleteStrategyEnum, maximumCapacity, maximumBytes, DEFAULT_SLAB_SIZE, new JacksonCodec<>(null, valueType));
+    }
+
+    /**
+     * @param deleteStrategyEnum 删除策略
+     * @param maximumCapacity    最大数量
+     * @param maximumBytes       最多使用的堆外内存
+     * @param slabSize           每次申请的堆外内存大小 必须是2的幂,单个value序列化之后不能超过slabSize
+     * @param codec              value的序列化方式
+     */
+    public OffHeapCacheHashMap(CacheHashMap.DeleteStrategyEnum deleteStrategyEnum, int maximumCapacity,
+                               long maximumBytes, int slabSize, Codec<V> codec) {
+        this.allocator = new SlabAllocator(slabSize, maximumBytes);
+        this.codec = Objects.requireNonNull(codec);
+        this.cache = new CacheHashMap<K, SlabAllocator.Slot>(deleteStrategyEnum, maximumCapacity) {
+            @Override
+            protected void onRemoval(K key, SlabAllocator.Slot slot, RemovalCause cause) {
+                slot.retire(allocator);
+            }
+        };
+        this.cache.setMaximumWeight(maximumBytes, (key, slot) -> slot.chunkSize());
+    }
+
+    /**
+     * 获取缓存的value 每次都会反序列化出新的对象
+     */
+    public V getCache(K key) {
+        return read(cache.getCache(key));
+    }
+
+    /**
+     * 序列化之后写入堆外内存
+     * 没有空闲的内存时按照删除策略删除元素,直到可以放下
+     */
+    public void putCache(K key, V value) {
+        Objects.requireNonNull(key);
+        cache.putCache(key, write(Objects.requireNonNull(value)));
+    }
+
+    /**
+     * 获取缓存的value,不存在时使用loader加载并添加
+     * 同一个key同时只会有一个线程执行loader
+     *
+     * @see CacheHashMap#getOrLoad(Object, Function)
+     */
+    public V getOrLoad(K key, Function<? super K, ? extends V> loader) {
+        Objects.requireNonNull(loader);
+        AtomicReference<V> loaded = new AtomicReference<>();
+        while (true) {
+            SlabAllocator.Slot slot = cache.getOrLoad(key, k -> {
+                V value = loader.apply(k);
+                loaded.set(value);
+                return value == null ? null : write(value);
+            });
+            V value = read(slot);
+            if (value != null || slot == null)
+                return value;
+            //读取之前已经被删除 当前线程加载的直接返回,其他线程加载的重新进入getOrLoad,保证同一个key同时只加载一次
+            if ((value = loaded.get()) != null)
+                return value;
+        }
+    }
+
+    /**
+     * @see CacheHashMap#setExpireAfterWrite(Duration)
+     */
+    public void setExpireAfterWrite(Duration duration) {
+        cache.setExpireAfterWrite(duration);
+    }
+
+    /**
+     * @see CacheHashMap#setExpireAfterAccess(Duration)
+     */
+    public void setExpireAfterAccess(Duration duration) {
+        cache.setExpireAfterAccess(duration);
+    }
+
+    /**
+     * 清空 所有的块回到空闲链表
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * @see CacheHashMap#getStats()
+     */
+    public CacheStats getStats() {
+        return cache.getStats();
+    }
+
+    /**
+     * 已经分配出去的字节数(按照块大小计算)
+     */
+    public long getUsedBytes() {
+        return allocator.getUsedBytes();
+    }
+
+    /**
+     * 已经申请的堆外内存 申请之后不会释放,只会在缓存内部重复使用
+     */
+    public long getAllocatedBytes() {
+        return allocator.getAllocatedBytes();
+    }
+
+    private SlabAllocator.Slot write(V value) {
+        byte[] bytes = codec.encode(value);
+        SlabAllocator.Slot slot;
+        while ((slot = allocator.allocate(bytes.length)) == null)
+            if (!cache.evictAny())
+                throw new IllegalStateException("off-heap memory is exhausted, allocated:" + getAllocatedBytes());
+        slot.write(bytes);
+        return slot;
+    }
+
+    /**
+     * 读取期间块不会被释放 已经被删除时返回null
+     */
+    private V read(SlabAllocator.Slot slot) {
+        if (slot == null || !slot.acquire())
+            return null;
+        try {
+            return slot.read(codec);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        } finally {
+            slot.release(allocator);
+        }
+    }
+
+    /**
+     * value的序列化方式
+     */
+    public interface Codec<V> {
+        byte[] encode(V value);
+
+        V decode(InputStream inputStream) throws IOException;
+    }
+
+    /**
+     * 使用jackson序列化为json
+     */
+    public static class JacksonCodec<V> implements Codec<V> {
+        private final ObjectMapper objectMapper;
+        private final JavaType valueType;
+
+        /**
+         * @param objectMapper 为null时使用{@link PictogramMap}默认的ObjectMapper
+         */
+        public JacksonCodec(ObjectMapper objectMapper, Class<V> valueType) {
+            this.objectMapper = PictogramMap.Mapper.getObjectMapper(objectMapper);
+            this.valueType = this.objectMapper.constructType(Objects.requireNonNull(valueType));
+        }
+
+        /**
+         * @param objectMapper 为null时使用{@link PictogramMap}默认的ObjectMapper
+         */
+        public JacksonCodec(ObjectMapper objectMapper, TypeReference<V> valueType) {
+            this.objectMapper = PictogramMap.Mapper.getObjectMapper(objectMapper);
+            this.valueType = this.objectMapper.getTypeFactory().constructType(Objects.requireNonNull(valueType));
+        }
+
+        @Override
+        public byte[] encode(V value) {
+            try {
+                return objectMapper.writeValueAsBytes(value);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+
+        @Override
+        public V decode(InputStream inputStream) throws IOException {
+            return objectMapper.readValue(inputStream, valueType);
+        }
+    }
+}
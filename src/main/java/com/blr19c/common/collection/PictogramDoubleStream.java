@@ -0,0 +1,366 @@
+package com.blr19c.common.collection;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.*;
+import java.util.stream.*;
+
+/**
+ * double类型的流 {@link PictogramStream#mapToPictogramDouble} 整个过程没有装箱
+ * 提供与PictogramStream相同的便捷方法,toList的结果保存在double[]中 {@link DoubleList}
+ * parallel(ForkJoinPool)/parallel(int)的线程池在转换为其他流时保留
+ *
+ * @author blr
+ */
+public class PictogramDoubleStream implements BaseStream<Double, PictogramDoubleStream> {
+    private final DoubleStream stream;
+    private final ForkJoinPool pool;
+    private final int parallelism;
+
+    PictogramDoubleStream(DoubleStream stream, ForkJoinPool pool, int parallelism) {
+        this.stream = stream;
+        this.pool = pool;
+        this.parallelism = parallelism;
+    }
+
+    public static PictogramDoubleStream of(double... values) {
+        return of(DoubleStream.of(values));
+    }
+
+    public static PictogramDoubleStream of(DoubleStream stream) {
+        return new PictogramDoubleStream(stream, null, 0);
+    }
+
+    private PictogramDoubleStream wrap(DoubleStream stream) {
+        return new PictogramDoubleStream(stream, pool, parallelism);
+    }
+
+    private <R> R evaluate(Supplier<R> operation) {
+        return PictogramStream.evaluate(pool, parallelism, operation);
+    }
+
+    /**
+     * 转为jdk的流 不再使用设置的线程池
+     */
+    public DoubleStream toDoubleStream() {
+        return stream;
+    }
+
+    /**
+     * 与filter相反
+     */
+    public PictogramDoubleStream clean(DoublePredicate predicate) {
+        return filter(predicate.negate());
+    }
+
+    /**
+     * 在末尾添加
+     */
+    public PictogramDoubleStream addLast(double... values) {
+        return wrap(DoubleStream.concat(stream, DoubleStream.of(values)));
+    }
+
+    /**
+     * 在开头添加
+     */
+    public PictogramDoubleStream addFirst(double... values) {
+        return wrap(DoubleStream.concat(DoubleStream.of(values), stream));
+    }
+
+    /**
+     * 根据条件查询返回一个列表 所有条件在一次遍历中按传入的顺序判断,不会调整顺序 {@link FusedPredicate#ofDouble}
+     */
+    public DoubleList search(DoublePredicate... predicate) {
+        return filter(FusedPredicate.ofDouble(predicate)).toList();
+    }
+
+    /**
+     * 根据条件查询第一个 找到之后立即停止
+     */
+    @NotNull
+    public OptionalDouble searchFirst(DoublePredicate... predicate) {
+        return filter(FusedPredicate.ofDouble(predicate)).findFirst();
+    }
+
+    /**
+     * 根据条件查询一个,没查到或者查到多个时IllegalArgumentException
+     */
+    public double searchOne(DoublePredicate... predicate) {
+        DoubleList search = filter(FusedPredicate.ofDouble(predicate)).limit(2).toList();
+        FusedPredicate.requireOne(search.size());
+        return search.getDouble(0);
+    }
+
+    /**
+     * map转换之后转为list
+     */
+    public <R> List<R> mapToList(DoubleFunction<? extends R> mapper) {
+        return this.<R>mapToObj(mapper).toList();
+    }
+
+    /**
+     * 转为double[]保存的list
+     */
+    public DoubleList toList() {
+        return new DoubleList(toArray());
+    }
+
+    /**
+     * 与{@link PictogramStream#toMap(Function, Function)}相同 key重复时IllegalStateException
+     */
+    public <K, U> PictogramMap toMap(DoubleFunction<? extends K> keyMapper, DoubleFunction<? extends U> valueMapper) {
+        return PictogramMap.toPictogramMap(collect(HashMap::new,
+                (map, value) -> putUnique(map, keyMapper.apply(value), valueMapper.apply(value)),
+                (left, right) -> right.forEach((key, value) -> putUnique(left, key, value))));
+    }
+
+    private static <K, U> void putUnique(Map<K, U> map, K key, U value) {
+        map.merge(key, value, (oldValue, newValue) -> {
+            throw new IllegalStateException("Duplicate key " + oldValue);
+        });
+    }
+
+    public PictogramDoubleStream filter(DoublePredicate predicate) {
+        return wrap(stream.filter(predicate));
+    }
+
+    public PictogramDoubleStream map(DoubleUnaryOperator mapper) {
+        return wrap(stream.map(mapper));
+    }
+
+    public <U> PictogramStream<U> mapToObj(DoubleFunction<? extends U> mapper) {
+        return new PictogramStream<>(stream.mapToObj(mapper), pool, parallelism);
+    }
+
+    public PictogramIntStream mapToInt(DoubleToIntFunction mapper) {
+        return new PictogramIntStream(stream.mapToInt(mapper), pool, parallelism);
+    }
+
+    public PictogramLongStream mapToLong(DoubleToLongFunction mapper) {
+        return new PictogramLongStream(stream.mapToLong(mapper), pool, parallelism);
+    }
+
+    public PictogramDoubleStream flatMap(DoubleFunction<? extends DoubleStream> mapper) {
+        return wrap(stream.flatMap(mapper));
+    }
+
+    public PictogramStream<Double> boxed() {
+        return new PictogramStream<>(stream.boxed(), pool, parallelism);
+    }
+
+    public PictogramDoubleStream distinct() {
+        return wrap(stream.distinct());
+    }
+
+    public PictogramDoubleStream sorted() {
+        return wrap(stream.sorted());
+    }
+
+    public PictogramDoubleStream peek(DoubleConsumer action) {
+        return wrap(stream.peek(action));
+    }
+
+    public PictogramDoubleStream limit(long maxSize) {
+        return wrap(stream.limit(maxSize));
+    }
+
+    public PictogramDoubleStream skip(long n) {
+        return wrap(stream.skip(n));
+    }
+
+    public void forEach(DoubleConsumer action) {
+        evaluate(() -> {
+            stream.forEach(action);
+            return null;
+        });
+    }
+
+    public void forEachOrdered(DoubleConsumer action) {
+        evaluate(() -> {
+            stream.forEachOrdered(action);
+            return null;
+        });
+    }
+
+    @NotNull
+    public double[] toArray() {
+        return evaluate(stream::toArray);
+    }
+
+    public double reduce(double identity, DoubleBinaryOperator op) {
+        return evaluate(() -> stream.reduce(identity, op));
+    }
+
+    @NotNull
+    public OptionalDouble reduce(DoubleBinaryOperator op) {
+        return evaluate(() -> stream.reduce(op));
+    }
+
+    public <R> R collect(Supplier<R> supplier, ObjDoubleConsumer<R> accumulator, BiConsumer<R, R> combiner) {
+        return evaluate(() -> stream.collect(supplier, accumulator, combiner));
+    }
+
+    public double sum() {
+        return evaluate(stream::sum);
+    }
+
+    @NotNull
+    public OptionalDouble min() {
+        return evaluate(stream::min);
+    }
+
+    @NotNull
+    public OptionalDouble max() {
+        return evaluate(stream::max);
+    }
+
+    public long count() {
+        return evaluate(stream::count);
+    }
+
+    @NotNull
+    public OptionalDouble average() {
+        return evaluate(stream::average);
+    }
+
+    @NotNull
+    public DoubleSummaryStatistics summaryStatistics() {
+        return evaluate(stream::summaryStatistics);
+    }
+
+    public boolean anyMatch(DoublePredicate predicate) {
+        return evaluate(() -> stream.anyMatch(predicate));
+    }
+
+    public boolean allMatch(DoublePredicate predicate) {
+        return evaluate(() -> stream.allMatch(predicate));
+    }
+
+    public boolean noneMatch(DoublePredicate predicate) {
+        return evaluate(() -> stream.noneMatch(predicate));
+    }
+
+    @NotNull
+    public OptionalDouble findFirst() {
+        return evaluate(stream::findFirst);
+    }
+
+    @NotNull
+    public OptionalDouble findAny() {
+        return evaluate(stream::findAny);
+    }
+
+    @NotNull
+    @Override
+    public PrimitiveIterator.OfDouble iterator() {
+        return stream.iterator();
+    }
+
+    @NotNull
+    @Override
+    public Spliterator.OfDouble spliterator() {
+        return stream.spliterator();
+    }
+
+    @Override
+    public boolean isParallel() {
+        return stream.isParallel();
+    }
+
+    /**
+     * 顺序流 在当前线程中执行
+     */
+    @NotNull
+    @Override
+    public PictogramDoubleStream sequential() {
+        return of(stream.sequential());
+    }
+
+    @NotNull
+    @Override
+    public PictogramDoubleStream parallel() {
+        return wrap(stream.parallel());
+    }
+
+    /**
+     * @see PictogramStream#parallel(ForkJoinPool)
+     */
+    @NotNull
+    public PictogramDoubleStream parallel(ForkJoinPool pool) {
+        return new PictogramDoubleStream(stream.parallel(), Objects.requireNonNull(pool), 0);
+    }
+
+    /**
+     * @see PictogramStream#parallel(int)
+     */
+    @NotNull
+    public PictogramDoubleStream parallel(int parallelism) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("parallelism must be greater than 0, actual:" + parallelism);
+        return new PictogramDoubleStream(stream.parallel(), null, parallelism);
+    }
+
+    @NotNull
+    @Override
+    public PictogramDoubleStream unordered() {
+        return wrap(stream.unordered());
+    }
+
+    @NotNull
+    @Override
+    public PictogramDoubleStream onClose(Runnable closeHandler) {
+        return wrap(stream.onClose(closeHandler));
+    }
+
+    @Override
+    public void close() {
+        stream.close();
+    }
+
+    @Override
+    public String toString() {
+        return stream.toString();
+    }
+
+    /**
+     * 使用double[]保存的不可变list 每个元素只占用8字节
+     * get会装箱,使用{@link #getDouble(int)}直接获取double
+     */
+    public static final class DoubleList extends AbstractList<Double> implements RandomAccess {
+        private final double[] values;
+
+        DoubleList(double[] values) {
+            this.values = values;
+        }
+
+        public double getDouble(int index) {
+            return values[index];
+        }
+
+        @Override
+        public Double get(int index) {
+            return values[index];
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        /**
+         * 复制为double[]
+         */
+        public double[] toDoubleArray() {
+            return values.clone();
+        }
+
+        /**
+         * 不装箱的流
+         */
+        public PictogramDoubleStream pictogramStream() {
+            return of(values);
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package com.blr19c.common.collection;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.*;
+import java.util.stream.*;
+
+/**
+ * int类型的流 {@link PictogramStream#mapToPictogramInt} 整个过程没有装箱
+ * 提供与PictogramStream相同的便捷方法,toList的结果保存在int[]中 {@link IntList}
+ * parallel(ForkJoinPool)/parallel(int)的线程池在转换为其他流时保留
+ *
+ * @author blr
+ */
+public class PictogramIntStream implements BaseStream<Integer, PictogramIntStream> {
+    private final IntStream stream;
+    private final ForkJoinPool pool;
+    private final int parallelism;
+
+    PictogramIntStream(IntStream stream, ForkJoinPool pool, int parallelism) {
+        this.stream = stream;
+        this.pool = pool;
+        this.parallelism = parallelism;
+    }
+
+    public static PictogramIntStream of(int... values) {
+        return of(IntStream.of(values));
+    }
+
+    public static PictogramIntStream of(IntStream stream) {
+        return new PictogramIntStream(stream, null, 0);
+    }
+
+    public static PictogramIntStream range(int startInclusive, int endExclusive) {
+        return of(IntStream.range(startInclusive, endExclusive));
+    }
+
+    public static PictogramIntStream rangeClosed(int startInclusive, int endInclusive) {
+        return of(IntStream.rangeClosed(startInclusive, endInclusive));
+    }
+
+    private PictogramIntStream wrap(IntStream stream) {
+        return new PictogramIntStream(stream, pool, parallelism);
+    }
+
+    private <R> R evaluate(Supplier<R> operation) {
+        return PictogramStream.evaluate(pool, parallelism, operation);
+    }
+
+    /**
+     * 转为jdk的流 不再使用设置的线程池
+     */
+    public IntStream toIntStream() {
+        return stream;
+    }
+
+    /**
+     * 与filter相反
+     */
+    public PictogramIntStream clean(IntPredicate predicate) {
+        return filter(predicate.negate());
+    }
+
+    /**
+     * 在末尾添加
+     */
+    public PictogramIntStream addLast(int... values) {
+        return wrap(IntStream.concat(stream, IntStream.of(values)));
+    }
+
+    /**
+     * 在开头添加
+     */
+    public PictogramIntStream addFirst(int... values) {
+        return wrap(IntStream.concat(IntStream.of(values), stream));
+    }
+
+    /**
+     * 根据条件查询返回一个列表 所有条件在一次遍历中按传入的顺序判断,不会调整顺序 {@link FusedPredicate#ofInt}
+     */
+    public IntList search(IntPredicate... predicate) {
+        return filter(FusedPredicate.ofInt(predicate)).toList();
+    }
+
+    /**
+     * 根据条件查询第一个 找到之后立即停止
+     */
+    @NotNull
+    public OptionalInt searchFirst(IntPredicate... predicate) {
+        return filter(FusedPredicate.ofInt(predicate)).findFirst();
+    }
+
+    /**
+     * 根据条件查询一个,没查到或者查到多个时IllegalArgumentException
+     */
+    public int searchOne(IntPredicate... predicate) {
+        IntList search = filter(FusedPredicate.ofInt(predicate)).limit(2).toList();
+        FusedPredicate.requireOne(search.size());
+        return search.getInt(0);
+    }
+
+    /**
+     * map转换之后转为list
+     */
+    public <R> List<R> mapToList(IntFunction<? extends R> mapper) {
+        return this.<R>mapToObj(mapper).toList();
+    }
+
+    /**
+     * 转为int[]保存的list
+     */
+    public IntList toList() {
+        return new IntList(toArray());
+    }
+
+    /**
+     * 与{@link PictogramStream#toMap(Function, Function)}相同 key重复时IllegalStateException
+     */
+    public <K, U> PictogramMap toMap(IntFunction<? extends K> keyMapper, IntFunction<? extends U> valueMapper) {
+        return PictogramMap.toPictogramMap(collect(HashMap::new,
+                (map, value) -> putUnique(map, keyMapper.apply(value), valueMapper.apply(value)),
+                (left, right) -> right.forEach((key, value) -> putUnique(left, key, value))));
+    }
+
+    private static <K, U> void putUnique(Map<K, U> map, K key, U value) {
+        map.merge(key, value, (oldValue, newValue) -> {
+            throw new IllegalStateException("Duplicate key " + oldValue);
+        });
+    }
+
+    public PictogramIntStream filter(IntPredicate predicate) {
+        return wrap(stream.filter(predicate));
+    }
+
+    public PictogramIntStream map(IntUnaryOperator mapper) {
+        return wrap(stream.map(mapper));
+    }
+
+    public <U> PictogramStream<U> mapToObj(IntFunction<? extends U> mapper) {
+        return new PictogramStream<>(stream.mapToObj(mapper), pool, parallelism);
+    }
+
+    public PictogramLongStream mapToLong(IntToLongFunction mapper) {
+        return new PictogramLongStream(stream.mapToLong(mapper), pool, parallelism);
+    }
+
+    public PictogramDoubleStream mapToDouble(IntToDoubleFunction mapper) {
+        return new PictogramDoubleStream(stream.mapToDouble(mapper), pool, parallelism);
+    }
+
+    public PictogramLongStream asLongStream() {
+        return new PictogramLongStream(stream.asLongStream(), pool, parallelism);
+    }
+
+    public PictogramDoubleStream asDoubleStream() {
+        return new PictogramDoubleStream(stream.asDoubleStream(), pool, parallelism);
+    }
+
+    public PictogramIntStream flatMap(IntFunction<? extends IntStream> mapper) {
+        return wrap(stream.flatMap(mapper));
+    }
+
+    public PictogramStream<Integer> boxed() {
+        return new PictogramStream<>(stream.boxed(), pool, parallelism);
+    }
+
+    public PictogramIntStream distinct() {
+        return wrap(stream.distinct());
+    }
+
+    public PictogramIntStream sorted() {
+        return wrap(stream.sorted());
+    }
+
+    public PictogramIntStream peek(IntConsumer action) {
+        return wrap(stream.peek(action));
+    }
+
+    public PictogramIntStream limit(long maxSize) {
+        return wrap(stream.limit(maxSize));
+    }
+
+    public PictogramIntStream skip(long n) {
+        return wrap(stream.skip(n));
+    }
+
+    public void forEach(IntConsumer action) {
+        evaluate(() -> {
+            stream.forEach(action);
+            return null;
+        });
+    }
+
+    public void forEachOrdered(IntConsumer action) {
+        evaluate(() -> {
+            stream.forEachOrdered(action);
+            return null;
+        });
+    }
+
+    @NotNull
+    public int[] toArray() {
+        return evaluate(stream::toArray);
+    }
+
+    public int reduce(int identity, IntBinaryOperator op) {
+        return evaluate(() -> stream.reduce(identity, op));
+    }
+
+    @NotNull
+    public OptionalInt reduce(IntBinaryOperator op) {
+        return evaluate(() -> stream.reduce(op));
+    }
+
+    public <R> R collect(Supplier<R> supplier, ObjIntConsumer<R> accumulator, BiConsumer<R, R> combiner) {
+        return evaluate(() -> stream.collect(supplier, accumulator, combiner));
+    }
+
+    public int sum() {
+        return evaluate(stream::sum);
+    }
+
+    @NotNull
+    public OptionalInt min() {
+        return evaluate(stream::min);
+    }
+
+    @NotNull
+    public OptionalInt max() {
+        return evaluate(stream::max);
+    }
+
+    public long count() {
+        return evaluate(stream::count);
+    }
+
+    @NotNull
+    public OptionalDouble average() {
+        return evaluate(stream::average);
+    }
+
+    @NotNull
+    public IntSummaryStatistics summaryStatistics() {
+        return evaluate(stream::summaryStatistics);
+    }
+
+    public boolean anyMatch(IntPredicate predicate) {
+        return evaluate(() -> stream.anyMatch(predicate));
+    }
+
+    public boolean allMatch(IntPredicate predicate) {
+        return evaluate(() -> stream.allMatch(predicate));
+    }
+
+    public boolean noneMatch(IntPredicate predicate) {
+        return evaluate(() -> stream.noneMatch(predicate));
+    }
+
+    @NotNull
+    public OptionalInt findFirst() {
+        return evaluate(stream::findFirst);
+    }
+
+    @NotNull
+    public OptionalInt findAny() {
+        return evaluate(stream::findAny);
+    }
+
+    @NotNull
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        return stream.iterator();
+    }
+
+    @NotNull
+    @Override
+    public Spliterator.OfInt spliterator() {
+        return stream.spliterator();
+    }
+
+    @Override
+    public boolean isParallel() {
+        return stream.isParallel();
+    }
+
+    /**
+     * 顺序流 在当前线程中执行
+     */
+    @NotNull
+    @Override
+    public PictogramIntStream sequential() {
+        return of(stream.sequential());
+    }
+
+    @NotNull
+    @Override
+    public PictogramIntStream parallel() {
+        return wrap(stream.parallel());
+    }
+
+    /**
+     * @see PictogramStream#parallel(ForkJoinPool)
+     */
+    @NotNull
+    public PictogramIntStream parallel(ForkJoinPool pool) {
+        return new PictogramIntStream(stream.parallel(), Objects.requireNonNull(pool), 0);
+    }
+
+    /**
+     * @see PictogramStream#parallel(int)
+     */
+    @NotNull
+    public PictogramIntStream parallel(int parallelism) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("parallelism must be greater than 0, actual:" + parallelism);
+        return new PictogramIntStream(stream.parallel(), null, parallelism);
+    }
+
+    @NotNull
+    @Override
+    public PictogramIntStream unordered() {
+        return wrap(stream.unordered());
+    }
+
+    @NotNull
+    @Override
+    public PictogramIntStream onClose(Runnable closeHandler) {
+        return wrap(stream.onClose(closeHandler));
+    }
+
+    @Override
+    public void close() {
+        stream.close();
+    }
+
+    @Override
+    public String toString() {
+        return stream.toString();
+    }
+
+    /**
+     * 使用int[]保存的不可变list 每个元素只占用4字节
+     * get会装箱,使用{@link #getInt(int)}直接获取int
+     */
+    public static final class IntList extends AbstractList<Integer> implements RandomAccess {
+        private final int[] values;
+
+        IntList(int[] values) {
+            this.values = values;
+        }
+
+        public int getInt(int index) {
+            return values[index];
+        }
+
+        @Override
+        public Integer get(int index) {
+            return values[index];
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        /**
+         * 复制为int[]
+         */
+        public int[] toIntArray() {
+            return values.clone();
+        }
+
+        /**
+         * 不装箱的流
+         */
+        public PictogramIntStream pictogramStream() {
+            return of(values);
+        }
+    }
+}
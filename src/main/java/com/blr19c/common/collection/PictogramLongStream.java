@@ -0,0 +1,378 @@
+package com.blr19c.common.collection;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.*;
+import java.util.stream.*;
+
+/**
+ * long类型的流 {@link PictogramStream#mapToPictogramLong} 整个过程没有装箱
+ * 提供与PictogramStream相同的便捷方法,toList的结果保存在long[]中 {@link LongList}
+ * parallel(ForkJoinPool)/parallel(int)的线程池在转换为其他流时保留
+ *
+ * @author blr
+ */
+public class PictogramLongStream implements BaseStream<Long, PictogramLongStream> {
+    private final LongStream stream;
+    private final ForkJoinPool pool;
+    private final int parallelism;
+
+    PictogramLongStream(LongStream stream, ForkJoinPool pool, int parallelism) {
+        this.stream = stream;
+        this.pool = pool;
+        this.parallelism = parallelism;
+    }
+
+    public static PictogramLongStream of(long... values) {
+        return of(LongStream.of(values));
+    }
+
+    public static PictogramLongStream of(LongStream stream) {
+        return new PictogramLongStream(stream, null, 0);
+    }
+
+    public static PictogramLongStream range(long startInclusive, long endExclusive) {
+        return of(LongStream.range(startInclusive, endExclusive));
+    }
+
+    public static PictogramLongStream rangeClosed(long startInclusive, long endInclusive) {
+        return of(LongStream.rangeClosed(startInclusive, endInclusive));
+    }
+
+    private PictogramLongStream wrap(LongStream stream) {
+        return new PictogramLongStream(stream, pool, parallelism);
+    }
+
+    private <R> R evaluate(Supplier<R> operation) {
+        return PictogramStream.evaluate(pool, parallelism, operation);
+    }
+
+    /**
+     * 转为jdk的流 不再使用设置的线程池
+     */
+    public LongStream toLongStream() {
+        return stream;
+    }
+
+    /**
+     * 与filter相反
+     */
+    public PictogramLongStream clean(LongPredicate predicate) {
+        return filter(predicate.negate());
+    }
+
+    /**
+     * 在末尾添加
+     */
+    public PictogramLongStream addLast(long... values) {
+        return wrap(LongStream.concat(stream, LongStream.of(values)));
+    }
+
+    /**
+     * 在开头添加
+     */
+    public PictogramLongStream addFirst(long... values) {
+        return wrap(LongStream.concat(LongStream.of(values), stream));
+    }
+
+    /**
+     * 根据条件查询返回一个列表 所有条件在一次遍历中按传入的顺序判断,不会调整顺序 {@link FusedPredicate#ofLong}
+     */
+    public LongList search(LongPredicate... predicate) {
+        return filter(FusedPredicate.ofLong(predicate)).toList();
+    }
+
+    /**
+     * 根据条件查询第一个 找到之后立即停止
+     */
+    @NotNull
+    public OptionalLong searchFirst(LongPredicate... predicate) {
+        return filter(FusedPredicate.ofLong(predicate)).findFirst();
+    }
+
+    /**
+     * 根据条件查询一个,没查到或者查到多个时IllegalArgumentException
+     */
+    public long searchOne(LongPredicate... predicate) {
+        LongList search = filter(FusedPredicate.ofLong(predicate)).limit(2).toList();
+        FusedPredicate.requireOne(search.size());
+        return search.getLong(0);
+    }
+
+    /**
+     * map转换之后转为list
+     */
+    public <R> List<R> mapToList(LongFunction<? extends R> mapper) {
+        return this.<R>mapToObj(mapper).toList();
+    }
+
+    /**
+     * 转为long[]保存的list
+     */
+    public LongList toList() {
+        return new LongList(toArray());
+    }
+
+    /**
+     * 与{@link PictogramStream#toMap(Function, Function)}相同 key重复时IllegalStateException
+     */
+    public <K, U> PictogramMap toMap(LongFunction<? extends K> keyMapper, LongFunction<? extends U> valueMapper) {
+        return PictogramMap.toPictogramMap(collect(HashMap::new,
+                (map, value) -> putUnique(map, keyMapper.apply(value), valueMapper.apply(value)),
+                (left, right) -> right.forEach((key, value) -> putUnique(left, key, value))));
+    }
+
+    private static <K, U> void putUnique(Map<K, U> map, K key, U value) {
+        map.merge(key, value, (oldValue, newValue) -> {
+            throw new IllegalStateException("Duplicate key " + oldValue);
+        });
+    }
+
+    public PictogramLongStream filter(LongPredicate predicate) {
+        return wrap(stream.filter(predicate));
+    }
+
+    public PictogramLongStream map(LongUnaryOperator mapper) {
+        return wrap(stream.map(mapper));
+    }
+
+    public <U> PictogramStream<U> mapToObj(LongFunction<? extends U> mapper) {
+        return new PictogramStream<>(stream.mapToObj(mapper), pool, parallelism);
+    }
+
+    public PictogramIntStream mapToInt(LongToIntFunction mapper) {
+        return new PictogramIntStream(stream.mapToInt(mapper), pool, parallelism);
+    }
+
+    public PictogramDoubleStream mapToDouble(LongToDoubleFunction mapper) {
+        return new PictogramDoubleStream(stream.mapToDouble(mapper), pool, parallelism);
+    }
+
+    public PictogramDoubleStream asDoubleStream() {
+        return new PictogramDoubleStream(stream.asDoubleStream(), pool, parallelism);
+    }
+
+    public PictogramLongStream flatMap(LongFunction<? extends LongStream> mapper) {
+        return wrap(stream.flatMap(mapper));
+    }
+
+    public PictogramStream<Long> boxed() {
+        return new PictogramStream<>(stream.boxed(), pool, parallelism);
+    }
+
+    public PictogramLongStream distinct() {
+        return wrap(stream.distinct());
+    }
+
+    public PictogramLongStream sorted() {
+        return wrap(stream.sorted());
+    }
+
+    public PictogramLongStream peek(LongConsumer action) {
+        return wrap(stream.peek(action));
+    }
+
+    public PictogramLongStream limit(long maxSize) {
+        return wrap(stream.limit(maxSize));
+    }
+
+    public PictogramLongStream skip(long n) {
+        return wrap(stream.skip(n));
+    }
+
+    public void forEach(LongConsumer action) {
+        evaluate(() -> {
+            stream.forEach(action);
+            return null;
+        });
+    }
+
+    public void forEachOrdered(LongConsumer action) {
+        evaluate(() -> {
+            stream.forEachOrdered(action);
+            return null;
+        });
+    }
+
+    @NotNull
+    public long[] toArray() {
+        return evaluate(stream::toArray);
+    }
+
+    public long reduce(long identity, LongBinaryOperator op) {
+        return evaluate(() -> stream.reduce(identity, op));
+    }
+
+    @NotNull
+    public OptionalLong reduce(LongBinaryOperator op) {
+        return evaluate(() -> stream.reduce(op));
+    }
+
+    public <R> R collect(Supplier<R> supplier, ObjLongConsumer<R> accumulator, BiConsumer<R, R> combiner) {
+        return evaluate(() -> stream.collect(supplier, accumulator, combiner));
+    }
+
+    public long sum() {
+        return evaluate(stream::sum);
+    }
+
+    @NotNull
+    public OptionalLong min() {
+        return evaluate(stream::min);
+    }
+
+    @NotNull
+    public OptionalLong max() {
+        return evaluate(stream::max);
+    }
+
+    public long count() {
+        return evaluate(stream::count);
+    }
+
+    @NotNull
+    public OptionalDouble average() {
+        return evaluate(stream::average);
+    }
+
+    @NotNull
+    public LongSummaryStatistics summaryStatistics() {
+        return evaluate(stream::summaryStatistics);
+    }
+
+    public boolean anyMatch(LongPredicate predicate) {
+        return evaluate(() -> stream.anyMatch(predicate));
+    }
+
+    public boolean allMatch(LongPredicate predicate) {
+        return evaluate(() -> stream.allMatch(predicate));
+    }
+
+    public boolean noneMatch(LongPredicate predicate) {
+        return evaluate(() -> stream.noneMatch(predicate));
+    }
+
+    @NotNull
+    public OptionalLong findFirst() {
+        return evaluate(stream::findFirst);
+    }
+
+    @NotNull
+    public OptionalLong findAny() {
+        return evaluate(stream::findAny);
+    }
+
+    @NotNull
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return stream.iterator();
+    }
+
+    @NotNull
+    @Override
+    public Spliterator.OfLong spliterator() {
+        return stream.spliterator();
+    }
+
+    @Override
+    public boolean isParallel() {
+        return stream.isParallel();
+    }
+
+    /**
+     * 顺序流 在当前线程中执行
+     */
+    @NotNull
+    @Override
+    public PictogramLongStream sequential() {
+        return of(stream.sequential());
+    }
+
+    @NotNull
+    @Override
+    public PictogramLongStream parallel() {
+        return wrap(stream.parallel());
+    }
+
+    /**
+     * @see PictogramStream#parallel(ForkJoinPool)
+     */
+    @NotNull
+    public PictogramLongStream parallel(ForkJoinPool pool) {
+        return new PictogramLongStream(stream.parallel(), Objects.requireNonNull(pool), 0);
+    }
+
+    /**
+     * @see PictogramStream#parallel(int)
+     */
+    @NotNull
+    public PictogramLongStream parallel(int parallelism) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("parallelism must be greater than 0, actual:" + parallelism);
+        return new PictogramLongStream(stream.parallel(), null, parallelism);
+    }
+
+    @NotNull
+    @Override
+    public PictogramLongStream unordered() {
+        return wrap(stream.unordered());
+    }
+
+    @NotNull
+    @Override
+    public PictogramLongStream onClose(Runnable closeHandler) {
+        return wrap(stream.onClose(closeHandler));
+    }
+
+    @Override
+    public void close() {
+        stream.close();
+    }
+
+    @Override
+    public String toString() {
+        return stream.toString();
+    }
+
+    /**
+     * 使用long[]保存的不可变list 每个元素只占用8字节
+     * get会装箱,使用{@link #getLong(int)}直接获取long
+     */
+    public static final class LongList extends AbstractList<Long> implements RandomAccess {
+        private final long[] values;
+
+        LongList(long[] values) {
+            this.values = values;
+        }
+
+        public long getLong(int index) {
+            return values[index];
+        }
+
+        @Override
+        public Long get(int index) {
+            return values[index];
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        /**
+         * 复制为long[]
+         */
+        public long[] toLongArray() {
+            return values.clone();
+        }
+
+        /**
+         * 不装箱的流
+         */
+        public PictogramLongStream pictogramStream() {
+            return of(values);
+        }
+    }
+}
@@ -1,29 +1,25 @@
 package com.blr19c.common.collection;
 
 
-import com.blr19c.common.code.ReflectionUtils;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.github.pagehelper.PageHelper;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.jooq.lambda.Unchecked;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Reader;
 import java.io.Writer;
 import java.lang.reflect.Array;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
-import java.sql.Blob;
-import java.sql.Clob;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.*;
@@ -71,13 +67,66 @@ public class PictogramMap implements MapGetInterface, MapComputeInterface, MapPa
      */
     public static PictogramMap toPictogramMapAsJson(String json, ObjectMapper objectMapper) {
         try {
-            return toPictogramMap(Mapper.getObjectMapper(objectMapper).readValue(json, new TypeReference<Map<Object, Object>>() {
-            }));
+            return toPictogramMap(Mapper.getObjectMapper(objectMapper).readValue(json, Mapper.MAP_TYPE));
         } catch (JsonProcessingException e) {
             throw new IllegalArgumentException(e);
         }
     }
 
+    /**
+     * 将一个json转为PictogramMap 直接从流中解析,不需要先读取为String
+     */
+    public static PictogramMap toPictogramMapAsJson(InputStream json) {
+        return toPictogramMapAsJson(json, null);
+    }
+
+    /**
+     * 将一个json转为PictogramMap 直接从流中解析,不需要先读取为String
+     */
+    public static PictogramMap toPictogramMapAsJson(InputStream json, ObjectMapper objectMapper) {
+        try {
+            return toPictogramMap(Mapper.getObjectMapper(objectMapper).readValue(json, Mapper.MAP_TYPE));
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * 将一个json转为PictogramMap 直接从流中解析,不需要先读取为String
+     */
+    public static PictogramMap toPictogramMapAsJson(Reader json) {
+        return toPictogramMapAsJson(json, null);
+    }
+
+    /**
+     * 将一个json转为PictogramMap 直接从流中解析,不需要先读取为String
+     */
+    public static PictogramMap toPictogramMapAsJson(Reader json, ObjectMapper objectMapper) {
+        try {
+            return toPictogramMap(Mapper.getObjectMapper(objectMapper).readValue(json, Mapper.MAP_TYPE));
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * 将一个json转为PictogramMap 不需要先转为String
+     */
+    public static PictogramMap toPictogramMapAsJson(byte[] json) {
+        return toPictogramMapAsJson(json, null);
+    }
+
+    /**
+     * 将一个json转为PictogramMap 不需要先转为String
+     */
+    public static PictogramMap toPictogramMapAsJson(byte[] json, ObjectMapper objectMapper) {
+        try {
+            return toPictogramMap(Mapper.getObjectMapper(objectMapper).readValue(json, Mapper.MAP_TYPE));
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
     /**
      * 将一个对象转为map 并设置 自定义转换
      */
@@ -97,34 +146,29 @@ public class PictogramMap implements MapGetInterface, MapComputeInterface, MapPa
                                                      boolean callSuperClass,
                                                      boolean useGetter) {
         final PictogramMap pictogramMap = getInstance();
+        final Class<?> cls = data.getClass();
+        //getter和字段的访问方式每个类只解析一次
+        final ModelAccessor accessor = ModelAccessor.of(cls);
         //使用get方法
         if (useGetter) {
-            ReflectionUtils.doWithPropertyDescriptors(data.getClass(), null,
-                    p -> {
-                        Method readMethod = p.getReadMethod();
-                        ReflectionUtils.makeAccessible(readMethod);
-                        pictogramMap.putValue(p.getName(), ReflectionUtils.invokeMethod(readMethod, data));
-                    }, p -> {
-                        Method readMethod = p.getReadMethod();
-                        return readMethod != null &&
-                                !ReflectionUtils.isObjectMethod(readMethod) &&
-                                (callSuperClass || readMethod.getDeclaringClass() != data.getClass());
-                    }
-            );
+            for (ModelAccessor.Property property : accessor.readProperties())
+                if (callSuperClass || property.declaringClass != cls)
+                    pictogramMap.putValue(property.name, property.get(data));
             return pictogramMap;
         }
-        //使用字段反射
-        ReflectionUtils.ReflectionCallback<Field> fieldCallback = field -> {
-            ReflectionUtils.makeAccessible(field);
-            Map.Entry<?, ?> entry = entryFunction.apply(new AbstractMap.SimpleEntry<>(field.getName(), field.get(data)));
-            pictogramMap.putValueToMap(entry);
-        };
-        ReflectionUtils.ReflectionFilter<Field> fieldFilter = field -> !Modifier.isStatic(field.getModifiers());
-        if (callSuperClass) {
-            ReflectionUtils.doWithFields(data.getClass(), fieldCallback, fieldFilter);
-        } else {
-            ReflectionUtils.doWithLocalFields(data.getClass(), fieldCallback, fieldFilter);
-        }
+        //使用字段
+        for (ModelAccessor.Property field : accessor.fields())
+            if (callSuperClass || field.declaringClass == cls)
+                pictogramMap.putValueToMap(entryFunction.apply(new AbstractMap.SimpleEntry<>(field.name, field.get(data))));
+        return pictogramMap;
+    }
+
+    /**
+     * 将一个对象的所有getter转为map 使用生成的{@link ModelMapper}
+     */
+    public static <T> PictogramMap toPictogramMapAsModel(T data, ModelMapper<? super T> mapper) {
+        PictogramMap pictogramMap = getInstance();
+        mapper.toMap(data, pictogramMap.getMap());
         return pictogramMap;
     }
 
@@ -191,6 +235,23 @@ public class PictogramMap implements MapGetInterface, MapComputeInterface, MapPa
         return (Map<K, V>) data;
     }
 
+    /**
+     * 复制为不可变的PictogramMap 保持原来的顺序
+     * 适用于创建一次之后在多个线程中读取的配置等数据,读取比ConcurrentHashMap更快并且占用更少的内存
+     * 所有的获取方法不变,修改方法(putValue clear replace等)会抛出UnsupportedOperationException
+     * 只冻结当前的map,value中的map和集合仍然可以修改
+     */
+    public PictogramMap freeze() {
+        return isFrozen() ? this : new PictogramMap(FrozenMap.of(data), false);
+    }
+
+    /**
+     * 是否是{@link #freeze()}之后的不可变map
+     */
+    public boolean isFrozen() {
+        return data instanceof FrozenMap;
+    }
+
     /**
      * 链式校验一个value满足条件继续执行, 如返回结果为false则使用IllegalArgumentException抛出errorMessage
      */
@@ -519,30 +580,44 @@ public class PictogramMap implements MapGetInterface, MapComputeInterface, MapPa
      * 将所有的clobValue转为string
      */
     public PictogramMap clobValueToString() {
-        return replace(Unchecked.function(o -> o instanceof Clob ? IOUtils.toString(((Clob) o).getCharacterStream()) : o));
+        return replace(PictogramTransform.CLOB_TO_STRING);
     }
 
     /**
      * 将所有的blobValue转为byte[]
      */
     public PictogramMap blobValueToBytes() {
-        return replace(Unchecked.function(o -> o instanceof Blob ? ((Blob) o).getBytes(1, (int) ((Blob) o).length()) : o));
+        return replace(PictogramTransform.BLOB_TO_BYTES);
+    }
+
+    /**
+     * 不超过threshold(字节数或字符数)的lob转为byte[]/String
+     * 超过的写入临时文件转为{@link LobValue},之后通过{@link #getInputStream(Object)}/{@link #getReader(Object)}按需读取
+     * 需要在数据库连接关闭之前调用
+     */
+    public PictogramMap lobValueToLazy(long threshold) {
+        return replace(PictogramTransform.lazyLob(threshold));
     }
 
     /**
      * 字符串下划线key转驼峰格式
      */
     public PictogramMap underlineKeyToCamel() {
-        return replaceKey(k -> k instanceof String && !com.baomidou.mybatisplus.core.toolkit.StringUtils.isCamel((String) k) ?
-                com.baomidou.mybatisplus.core.toolkit.StringUtils.underlineToCamel((String) k) : k);
+        return replaceKey(PictogramTransform.UNDERLINE_TO_CAMEL);
     }
 
     /**
      * 字符串驼峰key转下划线格式
      */
     public PictogramMap camelKeyToUnderline() {
-        return replaceKey(k -> k instanceof String && com.baomidou.mybatisplus.core.toolkit.StringUtils.isCamel((String) k) ?
-                com.baomidou.mybatisplus.core.toolkit.StringUtils.camelToUnderline((String) k).toUpperCase() : k);
+        return replaceKey(PictogramTransform.CAMEL_TO_UNDERLINE);
+    }
+
+    /**
+     * 一次遍历执行transform中所有的转换 返回新的PictogramMap
+     */
+    public PictogramMap transform(PictogramTransform transform) {
+        return transform.apply(getMap());
     }
 
     /**
@@ -592,48 +667,90 @@ public class PictogramMap implements MapGetInterface, MapComputeInterface, MapPa
                          Recognizer<Map<Object, Object>, String, Object> recognizer,
                          boolean callSuperClass,
                          boolean useSetter) {
-        final T obj;
-        try {
-            obj = cls.getConstructor().newInstance();
-        } catch (Exception e) {
-            ReflectionUtils.handleReflectionException(e);
-            throw new IllegalStateException("Should never get here");
-        }
-        final Map<Object, Object> map = getMap();
+        return toModel(cls, getMap(), recognizer, callSuperClass, useSetter, false);
+    }
+
+    /**
+     * 转换为实体 key忽略大小写
+     */
+    public <T> T toModelIgnoreCase(Class<T> cls) {
+        return toModelIgnoreCase(cls, Map::get);
+    }
+
+    /**
+     * 转换为实体 key忽略大小写
+     */
+    public <T> T toModelIgnoreCase(Class<T> cls, Recognizer<Map<Object, Object>, String, Object> recognizer) {
+        return toModelIgnoreCase(cls, recognizer, true, true);
+    }
+
+    /**
+     * 转换为实体 key忽略大小写
+     * map的key只在转换前转为一次小写,属性名的小写每个类只计算一次
+     * recognizer收到的是小写key的map和小写的属性名,每个属性只调用一次
+     */
+    public <T> T toModelIgnoreCase(Class<T> cls,
+                                   Recognizer<Map<Object, Object>, String, Object> recognizer,
+                                   boolean callSuperClass,
+                                   boolean useSetter) {
+        return toModel(cls, lowerCaseKeyMap(), recognizer, callSuperClass, useSetter, true);
+    }
+
+    private <T> T toModel(Class<T> cls,
+                          Map<Object, Object> map,
+                          Recognizer<Map<Object, Object>, String, Object> recognizer,
+                          boolean callSuperClass,
+                          boolean useSetter,
+                          boolean lowerCase) {
+        //构造函数 setter和字段的访问方式每个类只解析一次
+        final ModelAccessor accessor = ModelAccessor.of(cls);
+        final T obj = (T) accessor.newInstance();
         //使用set方法
         if (useSetter) {
-            ReflectionUtils.doWithPropertyDescriptors(cls, null,
-                    p -> {
-                        Method writeMethod = p.getWriteMethod();
-                        Class<?> propertyType = p.getPropertyType();
-                        ReflectionUtils.makeAccessible(writeMethod);
-                        Object value = recognizer.test(map, p.getName());
-                        ReflectionUtils.invokeMethod(writeMethod, obj, propertyType.cast(value));
-                    }, p -> {
-                        Method writeMethod = p.getWriteMethod();
-                        return writeMethod != null &&
-                                recognizer.test(map, p.getName()) != null &&
-                                !ReflectionUtils.isObjectMethod(writeMethod) &&
-                                (callSuperClass || writeMethod.getDeclaringClass() != cls);
-                    }
-            );
+            for (ModelAccessor.Property property : accessor.writeProperties()) {
+                if (!callSuperClass && property.declaringClass == cls)
+                    continue;
+                Object value = recognizer.test(map, lowerCase ? property.lowerName : property.name);
+                if (value != null)
+                    property.set(obj, property.type.cast(value));
+            }
             return obj;
         }
-        //使用字段反射
-        ReflectionUtils.ReflectionFilter<Field> filter = f ->
-                !Modifier.isStatic(f.getModifiers()) && !Modifier.isFinal(f.getModifiers());
-        ReflectionUtils.ReflectionCallback<Field> callback = f -> {
-            f.setAccessible(true);
-            f.set(obj, recognizer.test(map, f.getName()));
-        };
-        if (callSuperClass) {
-            ReflectionUtils.doWithFields(cls, callback, filter);
-        } else {
-            ReflectionUtils.doWithLocalFields(cls, callback, filter);
-        }
+        //使用字段
+        for (ModelAccessor.Property field : accessor.fields())
+            if (field.isWritable() && (callSuperClass || field.declaringClass == cls))
+                field.set(obj, recognizer.test(map, lowerCase ? field.lowerName : field.name));
         return obj;
     }
 
+    /**
+     * String类型的key转为小写 转换后相同的key保留第一个
+     */
+    private Map<Object, Object> lowerCaseKeyMap() {
+        Map<Object, Object> map = getMap();
+        Map<Object, Object> lowerCaseMap = new HashMap<>(Math.max((int) (map.size() / .75F) + 1, 16));
+        for (Map.Entry<Object, Object> entry : map.entrySet()) {
+            Object key = entry.getKey();
+            lowerCaseMap.putIfAbsent(key instanceof String ? ((String) key).toLowerCase(Locale.ROOT) : key, entry.getValue());
+        }
+        return lowerCaseMap;
+    }
+
+    /**
+     * 转换为实体 使用生成的{@link ModelMapper}
+     * 按照属性名和下划线别名查找value
+     */
+    public <T> T toModel(ModelMapper<T> mapper) {
+        return mapper.toModel(getMap());
+    }
+
+    /**
+     * 转换为实体 使用生成的{@link ModelMapper}
+     */
+    public <T> T toModel(ModelMapper<T> mapper, Recognizer<Map<Object, Object>, String, Object> recognizer) {
+        return mapper.toModel(getMap(), recognizer);
+    }
+
     /**
      * 转为实体 json方式
      */
@@ -643,12 +760,20 @@ public class PictogramMap implements MapGetInterface, MapComputeInterface, MapPa
 
     /**
      * 转为实体 json方式
+     * 序列化的结果保存在TokenBuffer中直接反序列化,不会生成json字符串
      */
     public <T> T
     toModel(TypeReference<T> cls, ObjectMapper objectMapper, Function<PictogramMap, Object> func) {
+        objectMapper = Mapper.getObjectMapper(objectMapper);
+        TokenBuffer buffer = new TokenBuffer(objectMapper, false);
+        if (objectMapper.isEnabled(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS))
+            buffer = buffer.forceUseOfBigDecimal(true);
         try {
-            return Mapper.getObjectMapper(objectMapper).readValue(toJsonString(objectMapper, func), cls);
-        } catch (JsonProcessingException e) {
+            objectMapper.writeValue(buffer, func == null ? getMap() : func.apply(this));
+            try (JsonParser parser = buffer.asParser()) {
+                return objectMapper.readValue(parser, cls);
+            }
+        } catch (IOException e) {
             throw new IllegalArgumentException(e);
         }
     }
@@ -709,21 +834,22 @@ public class PictogramMap implements MapGetInterface, MapComputeInterface, MapPa
     }
 
     static class Mapper {
+        static final TypeReference<Map<Object, Object>> MAP_TYPE = new TypeReference<Map<Object, Object>>() {
+        };
 
         /**
-         * 获取objectMapper
+         * 默认的objectMapper会忽略未知字段和大小写
+         * 只创建一次,重复使用jackson缓存的序列化器和反序列化器 不能修改它的配置
          */
-        static ObjectMapper getObjectMapper(ObjectMapper objectMapper) {
-            return objectMapper == null ? getObjectMapper() : objectMapper;
-        }
+        private static final ObjectMapper DEFAULT_OBJECT_MAPPER = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .configure(MapperFeature.ACCEPT_CASE_INSENSITIVE_PROPERTIES, true);
 
         /**
-         * 默认的objectMapper会忽略未知字段和大小写
+         * 获取objectMapper
          */
-        private static ObjectMapper getObjectMapper() {
-            return new ObjectMapper()
-                    .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
-                    .configure(MapperFeature.ACCEPT_CASE_INSENSITIVE_PROPERTIES, true);
+        static ObjectMapper getObjectMapper(ObjectMapper objectMapper) {
+            return objectMapper == null ? DEFAULT_OBJECT_MAPPER : objectMapper;
         }
 
     }
@@ -0,0 +1,141 @@
+package com.blr19c.common.collection;
+
+import java.util.*;
+
+/**
+ * {@link PictogramRowSet}中的一行 使用集合共享的列索引查找value
+ * 可以修改 增加新的key时会在集合中增加一列(其他行中不存在)
+ *
+ * @author blr
+ */
+@SuppressWarnings("unchecked")
+public final class PictogramRow extends AbstractMap<Object, Object> implements MapGetInterface {
+    final PictogramRowSet rowSet;
+    /**
+     * 下标与rowSet的列对应 超出长度或者为ABSENT时不存在
+     */
+    private Object[] values;
+
+    PictogramRow(PictogramRowSet rowSet, Object[] values) {
+        this.rowSet = rowSet;
+        this.values = values;
+    }
+
+    @Override
+    public <K, V> Map<K, V> getMap() {
+        return (Map<K, V>) this;
+    }
+
+    /**
+     * 复制为PictogramMap 保持列的顺序
+     */
+    public PictogramMap toPictogramMap() {
+        return PictogramMap.toPictogramMap(new LinkedHashMap<>(this));
+    }
+
+    @Override
+    public Object get(Object key) {
+        Object value = value(rowSet.column(key, false));
+        return value == PictogramRowSet.ABSENT ? null : value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return value(rowSet.column(key, false)) != PictogramRowSet.ABSENT;
+    }
+
+    @Override
+    public Object put(Object key, Object value) {
+        int column = rowSet.column(key, true);
+        if (column >= values.length)
+            values = PictogramRowSet.grow(values, rowSet.columnCount());
+        Object old = values[column];
+        values[column] = value;
+        return old == PictogramRowSet.ABSENT ? null : old;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int column = rowSet.column(key, false);
+        Object old = value(column);
+        if (old == PictogramRowSet.ABSENT)
+            return null;
+        values[column] = PictogramRowSet.ABSENT;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, PictogramRowSet.ABSENT);
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Object value : values)
+            if (value != PictogramRowSet.ABSENT)
+                size++;
+        return size;
+    }
+
+    @Override
+    public Set<Entry<Object, Object>> entrySet() {
+        return new AbstractSet<Entry<Object, Object>>() {
+            @Override
+            public Iterator<Entry<Object, Object>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return PictogramRow.this.size();
+            }
+        };
+    }
+
+    private Object value(int column) {
+        return column < 0 || column >= values.length ? PictogramRowSet.ABSENT : values[column];
+    }
+
+    /**
+     * 按照列的顺序遍历 跳过不存在的列
+     */
+    private class EntryIterator implements Iterator<Entry<Object, Object>> {
+        private int next = advance(0);
+        private int last = -1;
+
+        private int advance(int column) {
+            while (column < values.length && values[column] == PictogramRowSet.ABSENT)
+                column++;
+            return column;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < values.length;
+        }
+
+        @Override
+        public Entry<Object, Object> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            int column = last = next;
+            next = advance(next + 1);
+            return new SimpleEntry<Object, Object>(rowSet.column(column), values[column]) {
+                @Override
+                public Object setValue(Object value) {
+                    values[column] = value;
+                    return super.setValue(value);
+                }
+            };
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0)
+                throw new IllegalStateException();
+            values[last] = PictogramRowSet.ABSENT;
+            last = -1;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.blr19c.common.collection;
+
+import java.util.*;
+
+/**
+ * 共享列结构的行集合 例如大量查询结果 {@link com.blr19c.common.mybatisWrapper.SqlWrapperUtils#listRows}
+ * 所有行共用一份列名到下标的索引,每行只保存一个Object[],不再为每一行创建hash表和entry
+ * 每一行是一个{@link PictogramRow},可以使用{@link MapGetInterface}的所有获取方法
+ * <p>
+ * 添加行或者新的列时不是线程安全的,添加完成之后可以在多个线程中读取
+ *
+ * @author blr
+ */
+public class PictogramRowSet extends AbstractList<PictogramRow> implements RandomAccess {
+    /**
+     * 不存在的列 与value为null区分
+     */
+    static final Object ABSENT = new Object();
+
+    /**
+     * 列只会增加 下标不变
+     */
+    private final Map<Object, Integer> index = new HashMap<>();
+    private Object[] columns = new Object[8];
+    private int columnCount;
+    private final ArrayList<PictogramRow> rows;
+
+    public PictogramRowSet() {
+        this(10);
+    }
+
+    public PictogramRowSet(int initialCapacity) {
+        this.rows = new ArrayList<>(initialCapacity);
+    }
+
+    /**
+     * 将多个map转为共享列结构的行
+     */
+    public static PictogramRowSet of(Collection<? extends Map<?, ?>> maps) {
+        PictogramRowSet rowSet = new PictogramRowSet(maps.size());
+        for (Map<?, ?> map : maps)
+            rowSet.addRow(map);
+        return rowSet;
+    }
+
+    /**
+     * 添加一行
+     */
+    public PictogramRow addRow(Map<?, ?> map) {
+        return addRow(map, PictogramTransform.of());
+    }
+
+    /**
+     * 转换之后添加一行 每个entry的转换与{@link PictogramTransform#apply(Map)}相同,但是不会创建新的map
+     */
+    public PictogramRow addRow(Map<?, ?> map, PictogramTransform transform) {
+        PictogramRow row = toRow(map, transform);
+        rows.add(row);
+        return row;
+    }
+
+    /**
+     * 所有的列 按照第一次出现的顺序
+     */
+    public List<Object> getColumns() {
+        return Collections.unmodifiableList(Arrays.asList(columns).subList(0, columnCount));
+    }
+
+    /**
+     * 释放多余的容量
+     */
+    public void trimToSize() {
+        rows.trimToSize();
+    }
+
+    @Override
+    public PictogramRow get(int index) {
+        return rows.get(index);
+    }
+
+    @Override
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * 其他集合的行会复制到当前的列结构中
+     */
+    @Override
+    public PictogramRow set(int index, PictogramRow row) {
+        return rows.set(index, row.rowSet == this ? row : toRow(row, PictogramTransform.of()));
+    }
+
+    /**
+     * 其他集合的行会复制到当前的列结构中
+     */
+    @Override
+    public void add(int index, PictogramRow row) {
+        rows.add(index, row.rowSet == this ? row : toRow(row, PictogramTransform.of()));
+    }
+
+    @Override
+    public PictogramRow remove(int index) {
+        return rows.remove(index);
+    }
+
+    @Override
+    public void clear() {
+        rows.clear();
+    }
+
+    /**
+     * 相同来源的map通常列的顺序相同,先比较下一个列,不同时才查找索引
+     */
+    private PictogramRow toRow(Map<?, ?> map, PictogramTransform transform) {
+        Object[] values = absentValues(columnCount);
+        int next = 0;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            Object key = transform.applyKey(entry.getKey());
+            int column = next < columnCount && Objects.equals(columns[next], key) ? next : column(key, true);
+            if (column >= values.length)
+                values = grow(values, columnCount);
+            //与PictogramTransform#apply相同 没有改变的key不覆盖已经存在的
+            if (PictogramTransform.replaces(entry.getKey(), key) || values[column] == ABSENT)
+                values[column] = transform.applyValue(entry.getValue());
+            next = column + 1;
+        }
+        return new PictogramRow(this, values);
+    }
+
+    /**
+     * 列的下标
+     *
+     * @param create 不存在时是否增加新的列
+     * @return -1: 不存在
+     */
+    int column(Object key, boolean create) {
+        Integer column = index.get(key);
+        if (column != null)
+            return column;
+        if (!create)
+            return -1;
+        if (columnCount == columns.length)
+            columns = Arrays.copyOf(columns, columnCount << 1);
+        columns[columnCount] = key;
+        index.put(key, columnCount);
+        return columnCount++;
+    }
+
+    Object column(int column) {
+        return columns[column];
+    }
+
+    int columnCount() {
+        return columnCount;
+    }
+
+    static Object[] absentValues(int length) {
+        Object[] values = new Object[length];
+        Arrays.fill(values, ABSENT);
+        return values;
+    }
+
+    static Object[] grow(Object[] values, int length) {
+        Object[] grown = Arrays.copyOf(values, length);
+        Arrays.fill(grown, values.length, length, ABSENT);
+        return grown;
+    }
+}
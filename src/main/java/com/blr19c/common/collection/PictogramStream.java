@@ -3,6 +3,8 @@ package com.blr19c.common.collection;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.*;
 import java.util.stream.*;
 
@@ -13,9 +15,17 @@ import java.util.stream.*;
  * @author blr
  */
 public class PictogramStream<T> extends OriginalStream<T> {
+    /**
+     * List.spliterator()默认的迭代器拆分 {@link Spliterators#spliterator(Collection, int)}
+     */
+    private static final Class<?> ITERATOR_SPLITERATOR = Spliterators.spliterator(Collections.emptyList(), 0).getClass();
 
     private PictogramStream(Stream<T> stream) {
-        super(stream);
+        super(stream, null, 0);
+    }
+
+    PictogramStream(Stream<T> stream, ForkJoinPool pool, int parallelism) {
+        super(stream, pool, parallelism);
     }
 
     @SafeVarargs
@@ -27,7 +37,20 @@ public class PictogramStream<T> extends OriginalStream<T> {
         return new PictogramStream<>(stream);
     }
 
+    /**
+     * java8中除了ArrayList等少数实现之外,RandomAccess的List(例如{@link PictogramRowSet})默认使用迭代器拆分
+     * 并行时拆分不均匀并且需要复制元素,这些List(以及不是SUBSIZED的)改为按照下标拆分
+     * Collections.synchronizedList/unmodifiableList等包装类的spliterator()直接使用被包装的List,
+     * 只有被包装的List使用迭代器拆分时才按照下标拆分
+     */
     public static <T> PictogramStream<T> of(Collection<T> collection) {
+        if (collection instanceof List && collection instanceof RandomAccess) {
+            Spliterator<T> spliterator = collection.spliterator();
+            //迭代器拆分也是SUBSIZED 只能按照类型判断
+            if (spliterator.getClass() == ITERATOR_SPLITERATOR || !spliterator.hasCharacteristics(Spliterator.SUBSIZED))
+                spliterator = new ListSpliterator<>((List<T>) collection, 0, collection.size());
+            return new PictogramStream<>(StreamSupport.stream(spliterator, false));
+        }
         return new PictogramStream<>(collection.stream());
     }
 
@@ -50,7 +73,16 @@ public class PictogramStream<T> extends OriginalStream<T> {
      */
     public PictogramStream<T> distinct(Comparator<T> comparator) {
         return collect(Collectors.collectingAndThen(
-                Collectors.toCollection(() -> new TreeSet<>(comparator)), PictogramStream::of));
+                Collectors.toCollection(() -> new TreeSet<>(comparator)), set -> wrap(set.stream())));
+    }
+
+    /**
+     * 根据keyExtractor的结果去重 保留第一个
+     * 使用hash去重,不需要排序,key需要正确实现equals和hashCode
+     */
+    public PictogramStream<T> distinctBy(Function<? super T, ?> keyExtractor) {
+        Objects.requireNonNull(keyExtractor);
+        return map(t -> new DistinctKey<T>(keyExtractor.apply(t), t)).distinct().map(key -> key.value);
     }
 
     /**
@@ -60,6 +92,86 @@ public class PictogramStream<T> extends OriginalStream<T> {
         return sorted(Comparator.comparing(keyExtractor));
     }
 
+    /**
+     * 最大的k个 从大到小排序
+     * 只保留k个元素的堆,不需要对全部元素排序,相同的元素顺序不确定
+     */
+    public PictogramStream<T> topK(int k, Comparator<? super T> comparator) {
+        if (k < 0)
+            throw new IllegalArgumentException("k must not be negative, actual:" + k);
+        Objects.requireNonNull(comparator);
+        return collect(Collector.of(
+                () -> new PriorityQueue<T>(Math.max(Math.min(k, 1024), 1), comparator),
+                (heap, t) -> offer(heap, t, k, comparator),
+                (left, right) -> {
+                    for (T t : right)
+                        offer(left, t, k, comparator);
+                    return left;
+                },
+                heap -> {
+                    List<T> list = new ArrayList<>(heap);
+                    list.sort(comparator.reversed());
+                    return wrap(list.stream());
+                }));
+    }
+
+    /**
+     * 根据keyExtractor最大的k个 从大到小排序
+     */
+    public <U extends Comparable<? super U>> PictogramStream<T> topK(int k, Function<? super T, ? extends U> keyExtractor) {
+        return topK(k, Comparator.comparing(keyExtractor));
+    }
+
+    /**
+     * 最小的k个 从小到大排序
+     */
+    public PictogramStream<T> bottomK(int k, Comparator<? super T> comparator) {
+        return topK(k, comparator.reversed());
+    }
+
+    /**
+     * 根据keyExtractor最小的k个 从小到大排序
+     */
+    public <U extends Comparable<? super U>> PictogramStream<T> bottomK(int k, Function<? super T, ? extends U> keyExtractor) {
+        return bottomK(k, Comparator.comparing(keyExtractor));
+    }
+
+    /**
+     * 堆顶是保留的最小的元素 超过k个时替换堆顶
+     */
+    private static <T> void offer(PriorityQueue<T> heap, T t, int k, Comparator<? super T> comparator) {
+        if (heap.size() < k)
+            heap.offer(t);
+        else if (k > 0 && comparator.compare(t, heap.peek()) > 0) {
+            heap.poll();
+            heap.offer(t);
+        }
+    }
+
+    /**
+     * 按照顺序每size个元素分为一批,最后一批可能不足size个
+     * 批次在消费时才从上游读取,同一时间只持有当前这一批,不会先把整个流收集到内存
+     * 分批之后的流是顺序流,需要并行处理时在每一批中处理;关闭时同时关闭原来的流
+     */
+    public PictogramStream<List<T>> chunked(int size) {
+        if (size <= 0)
+            throw new IllegalArgumentException("size must be greater than 0, actual:" + size);
+        Stream<List<T>> chunks = StreamSupport.stream(new ChunkSpliterator<>(stream.spliterator(), size), false);
+        return wrap(chunks.onClose(stream::close));
+    }
+
+    /**
+     * 每size个元素执行一次action {@link #chunked(int)}
+     * 使用iterator而不是终止操作 action总是在当前线程中执行(不会提交到pool)
+     */
+    public void forEachBatch(int size, Consumer<? super List<T>> action) {
+        try (PictogramStream<List<T>> chunks = chunked(size)) {
+            Iterator<List<T>> iterator = chunks.iterator();
+            while (iterator.hasNext())
+                action.accept(iterator.next());
+        }
+    }
+
     /**
      * map转换之后转为list
      */
@@ -67,12 +179,54 @@ public class PictogramStream<T> extends OriginalStream<T> {
         return this.<R>map(mapper).toList();
     }
 
+    /**
+     * 转为{@link PictogramIntStream} 与{@link #mapToInt(ToIntFunction)}相同但是保留设置的线程池
+     */
+    public PictogramIntStream mapToPictogramInt(ToIntFunction<? super T> mapper) {
+        return new PictogramIntStream(stream.mapToInt(mapper), pool, parallelism);
+    }
+
+    /**
+     * 转为{@link PictogramLongStream} 与{@link #mapToLong(ToLongFunction)}相同但是保留设置的线程池
+     */
+    public PictogramLongStream mapToPictogramLong(ToLongFunction<? super T> mapper) {
+        return new PictogramLongStream(stream.mapToLong(mapper), pool, parallelism);
+    }
+
+    /**
+     * 转为{@link PictogramDoubleStream} 与{@link #mapToDouble(ToDoubleFunction)}相同但是保留设置的线程池
+     */
+    public PictogramDoubleStream mapToPictogramDouble(ToDoubleFunction<? super T> mapper) {
+        return new PictogramDoubleStream(stream.mapToDouble(mapper), pool, parallelism);
+    }
+
+    /**
+     * @see #mapToPictogramInt(ToIntFunction)
+     */
+    public PictogramIntStream flatMapToPictogramInt(Function<? super T, ? extends IntStream> mapper) {
+        return new PictogramIntStream(stream.flatMapToInt(mapper), pool, parallelism);
+    }
+
+    /**
+     * @see #mapToPictogramLong(ToLongFunction)
+     */
+    public PictogramLongStream flatMapToPictogramLong(Function<? super T, ? extends LongStream> mapper) {
+        return new PictogramLongStream(stream.flatMapToLong(mapper), pool, parallelism);
+    }
+
+    /**
+     * @see #mapToPictogramDouble(ToDoubleFunction)
+     */
+    public PictogramDoubleStream flatMapToPictogramDouble(Function<? super T, ? extends DoubleStream> mapper) {
+        return new PictogramDoubleStream(stream.flatMapToDouble(mapper), pool, parallelism);
+    }
+
     /**
      * 在末尾添加
      */
     @SafeVarargs
     public final PictogramStream<T> addLast(T... objs) {
-        return of(Stream.concat(stream, Stream.of(objs)));
+        return wrap(Stream.concat(stream, Stream.of(objs)));
     }
 
     /**
@@ -80,19 +234,19 @@ public class PictogramStream<T> extends OriginalStream<T> {
      */
     @SafeVarargs
     public final PictogramStream<T> addFirst(T... objs) {
-        return of(Stream.concat(Stream.of(objs), stream));
+        return wrap(Stream.concat(Stream.of(objs), stream));
     }
 
     /**
      * 根据条件查询一个,没查到返回null
+     * 找到第二个满足条件的元素时立即停止
      */
     @SafeVarargs
     public final T searchOneOrNull(Predicate<? super T>... predicate) {
-        List<T> search = search(predicate);
+        List<T> search = filter(fuse(false, predicate)).limit(2).toList();
         if (search.isEmpty())
             return null;
-        if (search.size() != 1)
-            throw new IllegalArgumentException("There is more than one result");
+        FusedPredicate.requireOne(search.size());
         return search.get(0);
     }
 
@@ -107,56 +261,240 @@ public class PictogramStream<T> extends OriginalStream<T> {
         return t;
     }
 
+    /**
+     * 根据条件查询第一个,没查到返回null
+     * 找到之后立即停止,不校验是否唯一
+     */
+    @SafeVarargs
+    public final T searchFirst(Predicate<? super T>... predicate) {
+        List<T> search = filter(fuse(false, predicate)).limit(1).toList();
+        return search.isEmpty() ? null : search.get(0);
+    }
+
     /**
      * 根据条件查询返回一个列表
+     * 所有条件合并为一个,按顺序判断,有一个不满足时不再判断后面的条件
      */
     @SafeVarargs
     public final List<T> search(Predicate<? super T>... predicate) {
-        PictogramStream<T> stream = null;
-        for (Predicate<? super T> p : predicate) {
-            stream = filter(p);
-        }
-        return stream(stream).toList();
+        return filter(fuse(false, predicate)).toList();
     }
 
-    @SuppressWarnings("unchecked")
-    private PictogramStream<T> stream(Object stream) {
-        return stream == null ? of(this.stream) :
-                stream instanceof PictogramStream ? (PictogramStream<T>) stream :
-                        stream instanceof Stream ? of((Stream<T>) stream) : of();
+    /**
+     * 与{@link #search(Predicate[])}相同 但是根据统计的淘汰率和耗时调整条件的判断顺序
+     * 只适用于相互独立且没有副作用的条件 {@link FusedPredicate}
+     */
+    @SafeVarargs
+    public final List<T> searchAdaptive(Predicate<? super T>... predicate) {
+        return filter(fuse(true, predicate)).toList();
+    }
+
+    /**
+     * 合并search的条件 只读取数组中的元素,不会把泛型数组传递出去
+     */
+    @SafeVarargs
+    private final FusedPredicate<T> fuse(boolean adaptive, Predicate<? super T>... predicate) {
+        List<Predicate<? super T>> predicates = new ArrayList<>(predicate.length);
+        for (Predicate<? super T> p : predicate)
+            predicates.add(p);
+        return FusedPredicate.of(predicates, adaptive);
     }
 
     public List<T> toList() {
-        return stream.collect(Collectors.toList());
+        return collect(Collectors.toList());
     }
 
     public Set<T> toSet() {
-        return stream.collect(Collectors.toSet());
+        return collect(Collectors.toSet());
     }
 
     public <C extends Collection<T>> C toCollection(Supplier<C> collectionFactory) {
-        return stream.collect(Collectors.toCollection(collectionFactory));
+        return collect(Collectors.toCollection(collectionFactory));
     }
 
     public <K, U> PictogramMap toMap(Function<? super T, ? extends K> keyMapper,
                                      Function<? super T, ? extends U> valueMapper) {
-        return PictogramMap.toPictogramMap(stream.collect(Collectors.toMap(keyMapper, valueMapper)));
+        return PictogramMap.toPictogramMap(collect(Collectors.toMap(keyMapper, valueMapper)));
+    }
+
+    /**
+     * 执行终止操作 pool为null并且parallelism大于0时创建新的线程池,执行完成后关闭
+     * {@link PictogramIntStream}等原始类型的流也使用这里
+     */
+    static <R> R evaluate(ForkJoinPool pool, int parallelism, Supplier<R> operation) {
+        if (pool == null && parallelism <= 0)
+            return operation.get();
+        ForkJoinPool executor = pool == null ? new ForkJoinPool(parallelism) : pool;
+        try {
+            return executor.invoke(ForkJoinTask.adapt(operation::get));
+        } finally {
+            if (executor != pool)
+                executor.shutdown();
+        }
+    }
+
+    /**
+     * {@link #distinctBy(Function)}使用key比较的包装
+     */
+    private static final class DistinctKey<T> {
+        private final Object key;
+        private final T value;
+
+        DistinctKey(Object key, T value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof DistinctKey && Objects.equals(key, ((DistinctKey<?>) o).key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key);
+        }
+    }
+
+    /**
+     * {@link #chunked(int)}每次从上游读取size个元素 不拆分
+     */
+    private static final class ChunkSpliterator<T> implements Spliterator<List<T>> {
+        private final Spliterator<T> source;
+        private final int size;
+
+        ChunkSpliterator(Spliterator<T> source, int size) {
+            this.source = source;
+            this.size = size;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super List<T>> action) {
+            //上游数量未知时不按照size预分配
+            List<T> chunk = new ArrayList<>((int) Math.min(size, Math.min(source.estimateSize(), 1024)));
+            Consumer<T> add = chunk::add;
+            while (chunk.size() < size && source.tryAdvance(add)) {
+                //读取到size个或者上游结束
+            }
+            if (chunk.isEmpty())
+                return false;
+            action.accept(chunk);
+            return true;
+        }
+
+        @Override
+        public Spliterator<List<T>> trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            long estimate = source.estimateSize();
+            return estimate == Long.MAX_VALUE ? estimate : (estimate + size - 1) / size;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | (source.characteristics() & SIZED);
+        }
+    }
+
+    /**
+     * RandomAccess的List按照下标拆分 每次拆分一半
+     * 只用于spliterator()使用迭代器拆分或者不是SUBSIZED的List {@link #of(Collection)}
+     */
+    static final class ListSpliterator<T> implements Spliterator<T> {
+        private final List<T> list;
+        private int index;
+        private final int end;
+
+        ListSpliterator(List<T> list, int index, int end) {
+            this.list = list;
+            this.index = index;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (index >= end)
+                return false;
+            action.accept(list.get(index++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            for (int i = index; i < end; i++)
+                action.accept(list.get(i));
+            index = end;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            int middle = (index + end) >>> 1;
+            if (middle <= index)
+                return null;
+            Spliterator<T> prefix = new ListSpliterator<>(list, index, middle);
+            index = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED;
+        }
     }
 }
 
 class OriginalStream<T> implements BaseStream<T, OriginalStream<T>> {
     protected final Stream<T> stream;
+    /**
+     * 执行终止操作的线程池 {@link #parallel(ForkJoinPool)}
+     */
+    protected final ForkJoinPool pool;
+    /**
+     * 大于0时每次终止操作创建新的线程池 {@link #parallel(int)}
+     */
+    protected final int parallelism;
 
-    OriginalStream(Stream<T> stream) {
+    OriginalStream(Stream<T> stream, ForkJoinPool pool, int parallelism) {
         this.stream = stream;
+        this.pool = pool;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * 新的流使用相同的线程池
+     */
+    protected <R> PictogramStream<R> wrap(Stream<R> stream) {
+        return new PictogramStream<>(stream, pool, parallelism);
+    }
+
+    /**
+     * 执行终止操作 设置了线程池时在线程池中执行,并行流的拆分任务也会在这个线程池中执行
+     */
+    protected <R> R evaluate(Supplier<R> operation) {
+        return PictogramStream.evaluate(pool, parallelism, operation);
+    }
+
+    private void execute(Runnable operation) {
+        evaluate(() -> {
+            operation.run();
+            return null;
+        });
     }
 
     public PictogramStream<T> filter(Predicate<? super T> predicate) {
-        return PictogramStream.of(stream.filter(predicate));
+        return wrap(stream.filter(predicate));
     }
 
     public <R> PictogramStream<R> map(Function<? super T, ? extends R> mapper) {
-        return PictogramStream.of(stream.map(mapper));
+        return wrap(stream.map(mapper));
     }
 
     public IntStream mapToInt(ToIntFunction<? super T> mapper) {
@@ -172,7 +510,7 @@ class OriginalStream<T> implements BaseStream<T, OriginalStream<T>> {
     }
 
     public <R> PictogramStream<R> flatMap(Function<? super T, ? extends Stream<? extends R>> mapper) {
-        return PictogramStream.of(stream.flatMap(mapper));
+        return wrap(stream.flatMap(mapper));
     }
 
     public IntStream flatMapToInt(Function<? super T, ? extends IntStream> mapper) {
@@ -189,103 +527,103 @@ class OriginalStream<T> implements BaseStream<T, OriginalStream<T>> {
     }
 
     public PictogramStream<T> distinct() {
-        return PictogramStream.of(stream.distinct());
+        return wrap(stream.distinct());
     }
 
     public PictogramStream<T> sorted() {
-        return PictogramStream.of(stream.sorted());
+        return wrap(stream.sorted());
     }
 
     public PictogramStream<T> sorted(Comparator<? super T> comparator) {
-        return PictogramStream.of(stream.sorted(comparator));
+        return wrap(stream.sorted(comparator));
     }
 
     public PictogramStream<T> peek(Consumer<? super T> action) {
-        return PictogramStream.of(stream.peek(action));
+        return wrap(stream.peek(action));
     }
 
     public PictogramStream<T> limit(long maxSize) {
-        return PictogramStream.of(stream.limit(maxSize));
+        return wrap(stream.limit(maxSize));
     }
 
     public PictogramStream<T> skip(long n) {
-        return PictogramStream.of(stream.skip(n));
+        return wrap(stream.skip(n));
     }
 
     public void forEach(Consumer<? super T> action) {
-        stream.forEach(action);
+        execute(() -> stream.forEach(action));
     }
 
     public void forEachOrdered(Consumer<? super T> action) {
-        stream.forEachOrdered(action);
+        execute(() -> stream.forEachOrdered(action));
     }
 
     @NotNull
     public Object[] toArray() {
-        return stream.toArray();
+        return evaluate(() -> stream.toArray());
     }
 
     @NotNull
     @SuppressWarnings("all")
     public <A> A[] toArray(IntFunction<A[]> generator) {
-        return stream.toArray(generator);
+        return evaluate(() -> stream.toArray(generator));
     }
 
     public T reduce(T identity, BinaryOperator<T> accumulator) {
-        return stream.reduce(identity, accumulator);
+        return evaluate(() -> stream.reduce(identity, accumulator));
     }
 
     @NotNull
     public Optional<T> reduce(BinaryOperator<T> accumulator) {
-        return stream.reduce(accumulator);
+        return evaluate(() -> stream.reduce(accumulator));
     }
 
     public <U> U reduce(U identity, BiFunction<U, ? super T, U> accumulator, BinaryOperator<U> combiner) {
-        return stream.reduce(identity, accumulator, combiner);
+        return evaluate(() -> stream.reduce(identity, accumulator, combiner));
     }
 
     public <R> R collect(Supplier<R> supplier, BiConsumer<R, ? super T> accumulator, BiConsumer<R, R> combiner) {
-        return stream.collect(supplier, accumulator, combiner);
+        return evaluate(() -> stream.collect(supplier, accumulator, combiner));
     }
 
     public <R, A> R collect(Collector<? super T, A, R> collector) {
-        return stream.collect(collector);
+        return evaluate(() -> stream.collect(collector));
     }
 
     @NotNull
     public Optional<T> min(Comparator<? super T> comparator) {
-        return stream.min(comparator);
+        return evaluate(() -> stream.min(comparator));
     }
 
     @NotNull
     public Optional<T> max(Comparator<? super T> comparator) {
-        return stream.max(comparator);
+        return evaluate(() -> stream.max(comparator));
     }
 
     public long count() {
-        return stream.count();
+        return evaluate(() -> stream.count());
     }
 
     public boolean anyMatch(Predicate<? super T> predicate) {
-        return stream.anyMatch(predicate);
+        return evaluate(() -> stream.anyMatch(predicate));
     }
 
     public boolean allMatch(Predicate<? super T> predicate) {
-        return stream.allMatch(predicate);
+        return evaluate(() -> stream.allMatch(predicate));
     }
 
     public boolean noneMatch(Predicate<? super T> predicate) {
-        return stream.noneMatch(predicate);
+        return evaluate(() -> stream.noneMatch(predicate));
     }
 
     @NotNull
     public Optional<T> findFirst() {
-        return stream.findFirst();
+        return evaluate(() -> stream.findFirst());
     }
 
     @NotNull
     public Optional<T> findAny() {
-        return stream.findAny();
+        return evaluate(() -> stream.findAny());
     }
 
     @NotNull
@@ -302,6 +640,9 @@ class OriginalStream<T> implements BaseStream<T, OriginalStream<T>> {
         return stream.isParallel();
     }
 
+    /**
+     * 顺序流 在当前线程中执行
+     */
     @NotNull
     public PictogramStream<T> sequential() {
         return PictogramStream.of(stream.sequential());
@@ -309,17 +650,36 @@ class OriginalStream<T> implements BaseStream<T, OriginalStream<T>> {
 
     @NotNull
     public PictogramStream<T> parallel() {
-        return PictogramStream.of(stream.parallel());
+        return wrap(stream.parallel());
+    }
+
+    /**
+     * 并行流 终止操作在pool中执行,不与其他并行流和CompletableFuture共用公共线程池
+     * iterator和spliterator是惰性的,仍然在调用的线程中执行
+     */
+    @NotNull
+    public PictogramStream<T> parallel(ForkJoinPool pool) {
+        return new PictogramStream<>(stream.parallel(), Objects.requireNonNull(pool), 0);
+    }
+
+    /**
+     * 并行流 每次终止操作创建最多parallelism个线程的线程池,执行完成后关闭
+     */
+    @NotNull
+    public PictogramStream<T> parallel(int parallelism) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("parallelism must be greater than 0, actual:" + parallelism);
+        return new PictogramStream<>(stream.parallel(), null, parallelism);
     }
 
     @NotNull
     public PictogramStream<T> unordered() {
-        return PictogramStream.of(stream.unordered());
+        return wrap(stream.unordered());
     }
 
     @NotNull
     public PictogramStream<T> onClose(Runnable closeHandler) {
-        return PictogramStream.of(stream.onClose(closeHandler));
+        return wrap(stream.onClose(closeHandler));
     }
 
     public void close() {
@@ -0,0 +1,188 @@
+package com.blr19c.common.collection;
+
+import com.baomidou.mybatisplus.core.toolkit.StringUtils;
+import org.apache.commons.io.IOUtils;
+import org.jooq.lambda.Unchecked;
+
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * 组合多个key和value的转换 只遍历一次map
+ * 例如 clobValueToString().blobValueToBytes().underlineKeyToCamel() 每个entry依次执行所有转换后放入预设大小的新map
+ * 不可变,可以作为常量在多个线程中使用
+ *
+ * @author blr
+ */
+public final class PictogramTransform {
+    static final Function<Object, Object> CLOB_TO_STRING = Unchecked.function(o ->
+            o instanceof Clob ? IOUtils.toString(((Clob) o).getCharacterStream()) : o);
+    static final Function<Object, Object> BLOB_TO_BYTES = Unchecked.function(o ->
+            o instanceof Blob ? blobToBytes((Blob) o) : o);
+    static final Function<Object, Object> UNDERLINE_TO_CAMEL = k -> k instanceof String ? underlineToCamel((String) k) : k;
+    static final Function<Object, Object> CAMEL_TO_UNDERLINE = k -> k instanceof String ? camelToUnderline((String) k) : k;
+
+    /**
+     * key转换的缓存 列名的数量很少但是会重复转换非常多次
+     * 每个列名只转换一次,转换后的字符串在所有行之间共享
+     * 超出容量时删除最老的,使用OLDEST读取时没有额外的记录开销
+     * 按照cpu核数分段,不同查询线程的未命中不会竞争同一个锁
+     */
+    private static final int KEY_CACHE_CAPACITY = 4096;
+    private static final CacheHashMap<String, String> CAMEL_KEYS = newKeyCache();
+    private static final CacheHashMap<String, String> UNDERLINE_KEYS = newKeyCache();
+
+    private static final PictogramTransform IDENTITY = new PictogramTransform(null, null);
+
+    /**
+     * null为不转换
+     */
+    private final Function<Object, Object> keyFunction;
+    private final Function<Object, Object> valueFunction;
+
+    private PictogramTransform(Function<Object, Object> keyFunction, Function<Object, Object> valueFunction) {
+        this.keyFunction = keyFunction;
+        this.valueFunction = valueFunction;
+    }
+
+    /**
+     * 不做任何转换
+     */
+    public static PictogramTransform of() {
+        return IDENTITY;
+    }
+
+    /**
+     * 在已有的key转换之后执行keyFunction
+     */
+    public PictogramTransform key(Function<Object, Object> keyFunction) {
+        Objects.requireNonNull(keyFunction);
+        return new PictogramTransform(this.keyFunction == null ? keyFunction : this.keyFunction.andThen(keyFunction),
+                valueFunction);
+    }
+
+    /**
+     * 在已有的value转换之后执行valueFunction
+     */
+    public PictogramTransform value(Function<Object, Object> valueFunction) {
+        Objects.requireNonNull(valueFunction);
+        return new PictogramTransform(keyFunction,
+                this.valueFunction == null ? valueFunction : this.valueFunction.andThen(valueFunction));
+    }
+
+    /**
+     * @see PictogramMap#clobValueToString()
+     */
+    public PictogramTransform clobValueToString() {
+        return value(CLOB_TO_STRING);
+    }
+
+    /**
+     * @see PictogramMap#blobValueToBytes()
+     */
+    public PictogramTransform blobValueToBytes() {
+        return value(BLOB_TO_BYTES);
+    }
+
+    /**
+     * @see PictogramMap#lobValueToLazy(long)
+     */
+    public PictogramTransform lobValueToLazy(long threshold) {
+        return value(lazyLob(threshold));
+    }
+
+    /**
+     * @see PictogramMap#underlineKeyToCamel()
+     */
+    public PictogramTransform underlineKeyToCamel() {
+        return key(UNDERLINE_TO_CAMEL);
+    }
+
+    /**
+     * @see PictogramMap#camelKeyToUnderline()
+     */
+    public PictogramTransform camelKeyToUnderline() {
+        return key(CAMEL_TO_UNDERLINE);
+    }
+
+    /**
+     * 不超过threshold的lob读取为byte[]/String 超过的写入临时文件{@link LobValue}
+     */
+    static Function<Object, Object> lazyLob(long threshold) {
+        if (threshold < 0L)
+            throw new IllegalArgumentException("threshold must not be negative, actual:" + threshold);
+        return Unchecked.function(o -> {
+            if (o instanceof Blob)
+                return ((Blob) o).length() <= threshold ? blobToBytes((Blob) o) : LobValue.of((Blob) o);
+            if (o instanceof Clob)
+                return ((Clob) o).length() <= threshold ? CLOB_TO_STRING.apply(o) : LobValue.of((Clob) o);
+            return o;
+        });
+    }
+
+    /**
+     * byte[]最多只能存放2G 超过时不再截断
+     */
+    private static byte[] blobToBytes(Blob blob) throws SQLException {
+        long length = blob.length();
+        if (length > Integer.MAX_VALUE - 8)
+            throw new IllegalStateException("blob is too large to read into byte[], use lobValueToLazy instead, length:" + length);
+        return blob.getBytes(1, (int) length);
+    }
+
+    private static CacheHashMap<String, String> newKeyCache() {
+        return new CacheHashMap<>(KEY_CACHE_CAPACITY + KEY_CACHE_CAPACITY / 2, .75F, 16,
+                CacheHashMap.DeleteStrategyEnum.OLDEST, KEY_CACHE_CAPACITY,
+                Runtime.getRuntime().availableProcessors(), true);
+    }
+
+    /**
+     * 下划线转驼峰 已经是驼峰时不变
+     * 同一个key同时未命中时只转换一次 {@link CacheHashMap#getOrLoad(Object, Function)}
+     */
+    static String underlineToCamel(String key) {
+        return CAMEL_KEYS.getOrLoad(key, k -> StringUtils.isCamel(k) ? k : StringUtils.underlineToCamel(k));
+    }
+
+    /**
+     * 驼峰转大写的下划线 不是驼峰时不变
+     * 同一个key同时未命中时只转换一次 {@link CacheHashMap#getOrLoad(Object, Function)}
+     */
+    static String camelToUnderline(String key) {
+        return UNDERLINE_KEYS.getOrLoad(key, k -> StringUtils.isCamel(k) ? StringUtils.camelToUnderline(k).toUpperCase() : k);
+    }
+
+    /**
+     * 转换source 结果放入新的map,保持原来的顺序
+     * 多个key转换后相同时与{@link PictogramMap#replaceKey(Function)}相同: 转换后改变的key覆盖没有改变的key,都改变时后面的覆盖前面的
+     */
+    public PictogramMap apply(Map<?, ?> source) {
+        Map<Object, Object> target = new LinkedHashMap<>(Math.max((int) (source.size() / .75F) + 1, 16));
+        for (Map.Entry<?, ?> entry : source.entrySet()) {
+            Object key = applyKey(entry.getKey());
+            if (replaces(entry.getKey(), key) || !target.containsKey(key))
+                target.put(key, applyValue(entry.getValue()));
+        }
+        return PictogramMap.toPictogramMap(target);
+    }
+
+    /**
+     * key转换后是否改变 改变的key覆盖已经存在的相同key
+     */
+    static boolean replaces(Object source, Object key) {
+        return !Objects.equals(source, key);
+    }
+
+    Object applyKey(Object key) {
+        return keyFunction == null ? key : keyFunction.apply(key);
+    }
+
+    Object applyValue(Object value) {
+        return valueFunction == null ? value : valueFunction.apply(value);
+    }
+}
@@ -0,0 +1,88 @@
+package com.blr19c.common.collection;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * 有损的读缓冲区 用于{@link CacheHashMap}记录读取
+ * 读取线程只做一次CAS把元素放入环形缓冲区,满了或者CAS失败时直接丢弃
+ * 缓冲区满时由读取线程尝试获取锁批量交给删除策略处理,获取不到锁就交给下一个线程
+ * 按照线程分为多个环,减少读取线程之间的竞争
+ *
+ * @author blr
+ */
+class ReadBuffer<E> {
+    static final int RING_SIZE = 16;
+    static final int RING_MASK = RING_SIZE - 1;
+
+    private final Ring<E>[] rings;
+    private final int ringMask;
+
+    /**
+     * @param stripes 环的数量 会向上取2的幂
+     */
+    @SuppressWarnings("unchecked")
+    ReadBuffer(int stripes) {
+        int count = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.rings = (Ring<E>[]) new Ring<?>[count];
+        for (int i = 0; i < count; i++)
+            rings[i] = new Ring<>();
+        this.ringMask = count - 1;
+    }
+
+    /**
+     * 记录一个元素
+     *
+     * @return true: 缓冲区已满需要清理
+     */
+    boolean offer(E e) {
+        if (ringMask == 0)
+            return rings[0].offer(e);
+        long id = Thread.currentThread().getId();
+        return rings[(int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & ringMask].offer(e);
+    }
+
+    /**
+     * 清理所有的环 需要持有锁
+     */
+    void drainTo(Consumer<E> consumer) {
+        for (Ring<E> ring : rings)
+            ring.drainTo(consumer);
+    }
+
+    static class Ring<E> {
+        private final AtomicLong writeCounter = new AtomicLong();
+        private final AtomicReferenceArray<E> buffer = new AtomicReferenceArray<>(RING_SIZE);
+        private volatile long readCounter;
+
+        boolean offer(E e) {
+            long head = readCounter;
+            long tail = writeCounter.get();
+            long size = tail - head;
+            if (size >= RING_SIZE)
+                return true;
+            //CAS失败说明其他线程正在写入 丢弃即可
+            if (writeCounter.compareAndSet(tail, tail + 1)) {
+                buffer.lazySet((int) (tail & RING_MASK), e);
+                return size + 1 >= RING_SIZE;
+            }
+            return false;
+        }
+
+        void drainTo(Consumer<E> consumer) {
+            long head = readCounter;
+            long tail = writeCounter.get();
+            for (; head != tail; head++) {
+                int index = (int) (head & RING_MASK);
+                E e = buffer.get(index);
+                //已经占位但还未写入 下次再处理
+                if (e == null)
+                    break;
+                buffer.lazySet(index, null);
+                consumer.accept(e);
+            }
+            readCounter = head;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.blr19c.common.collection;
+
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * 堆外内存的分配器 {@link OffHeapCacheHashMap}
+ * 内存按照slabSize申请DirectByteBuffer(slab),每个slab切分成相同大小的块(2的幂,最小64字节)
+ * 空闲块组成的链表保存在块自身的前4个字节中,堆上只保留slab对象
+ * slab中的块全部释放后slab回到空闲池,可以重新切分成其他大小,申请过的DirectByteBuffer不会交给GC回收
+ *
+ * @author blr
+ */
+class SlabAllocator {
+    static final int MIN_CHUNK_SIZE = 64;
+    private static final int MIN_CHUNK_SHIFT = Integer.numberOfTrailingZeros(MIN_CHUNK_SIZE);
+
+    private final int slabSize;
+    private final int maximumSlabs;
+    /**
+     * 按照块大小分类 每类中还有空闲块的slab
+     */
+    private final Slab[] partialSlabs;
+    /**
+     * 已经全部释放的slab 可以切分成任意大小
+     */
+    private final ArrayDeque<ByteBuffer> emptySlabs = new ArrayDeque<>();
+    private int allocatedSlabs;
+    private long usedBytes;
+
+    /**
+     * @param slabSize     每个slab的大小 必须是2的幂,单个value不能超过slabSize
+     * @param maximumBytes 最多申请的堆外内存
+     */
+    SlabAllocator(int slabSize, long maximumBytes) {
+        if (slabSize < MIN_CHUNK_SIZE || Integer.bitCount(slabSize) != 1)
+            throw new IllegalArgumentException("slabSize must be a power of two and not less than "
+                    + MIN_CHUNK_SIZE + ", actual:" + slabSize);
+        if (maximumBytes < slabSize)
+            throw new IllegalArgumentException("maximumBytes must not be less than slabSize, actual:" + maximumBytes);
+        this.slabSize = slabSize;
+        this.maximumSlabs = (int) Math.min(maximumBytes / slabSize, Integer.MAX_VALUE);
+        this.partialSlabs = new Slab[Integer.numberOfTrailingZeros(slabSize) - MIN_CHUNK_SHIFT + 1];
+    }
+
+    /**
+     * 申请可以放下length字节的块
+     *
+     * @return null: 没有空闲的内存
+     */
+    synchronized Slot allocate(int length) {
+        if (length > slabSize)
+            throw new IllegalArgumentException("value is larger than slabSize:" + slabSize + ", actual:" + length);
+        int sizeClass = sizeClass(length);
+        Slab slab = partialSlabs[sizeClass];
+        if (slab == null) {
+            ByteBuffer buffer = emptySlabs.poll();
+            if (buffer == null) {
+                if (allocatedSlabs >= maximumSlabs)
+                    return null;
+                buffer = ByteBuffer.allocateDirect(slabSize);
+                allocatedSlabs++;
+            }
+            slab = new Slab(buffer, sizeClass, MIN_CHUNK_SIZE << sizeClass);
+            link(slab);
+        }
+        int offset = slab.pop();
+        if (slab.isFull())
+            unlink(slab);
+        usedBytes += slab.chunkSize;
+        return new Slot(slab, offset, length);
+    }
+
+    /**
+     * 释放块 slab中的块全部释放后回到空闲池
+     */
+    synchronized void free(Slot slot) {
+        Slab slab = slot.slab;
+        boolean full = slab.isFull();
+        slab.push(slot.offset);
+        usedBytes -= slab.chunkSize;
+        if (slab.used == 0) {
+            if (!full)
+                unlink(slab);
+            emptySlabs.push(slab.buffer);
+        } else if (full) {
+            link(slab);
+        }
+    }
+
+    /**
+     * 已经分配出去的字节数(按照块大小计算)
+     */
+    synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * 已经申请的堆外内存
+     */
+    synchronized long getAllocatedBytes() {
+        return (long) allocatedSlabs * slabSize;
+    }
+
+    private void link(Slab slab) {
+        Slab head = partialSlabs[slab.sizeClass];
+        slab.next = head;
+        if (head != null)
+            head.prev = slab;
+        partialSlabs[slab.sizeClass] = slab;
+    }
+
+    private void unlink(Slab slab) {
+        if (slab.prev == null)
+            partialSlabs[slab.sizeClass] = slab.next;
+        else
+            slab.prev.next = slab.next;
+        if (slab.next != null)
+            slab.next.prev = slab.prev;
+        slab.prev = slab.next = null;
+    }
+
+    /**
+     * 块大小的分类 64->0 128->1 ...
+     */
+    private static int sizeClass(int length) {
+        if (length <= MIN_CHUNK_SIZE)
+            return 0;
+        return 32 - Integer.numberOfLeadingZeros(length - 1) - MIN_CHUNK_SHIFT;
+    }
+
+    /**
+     * 切分成相同大小块的一段堆外内存
+     * 所有字段只在持有SlabAllocator的锁时访问
+     */
+    static class Slab {
+        final ByteBuffer buffer;
+        final int sizeClass;
+        final int chunkSize;
+        final int chunks;
+        /**
+         * 已经分配出去的块数量
+         */
+        int used;
+        /**
+         * 从未分配过的块从这里开始
+         */
+        int bump;
+        /**
+         * 空闲链表的头 -1为空
+         */
+        int freeHead = -1;
+        Slab prev, next;
+
+        Slab(ByteBuffer buffer, int sizeClass, int chunkSize) {
+            this.buffer = buffer;
+            this.sizeClass = sizeClass;
+            this.chunkSize = chunkSize;
+            this.chunks = buffer.capacity() / chunkSize;
+        }
+
+        int pop() {
+            int offset;
+            if (freeHead != -1) {
+                offset = freeHead;
+                freeHead = buffer.getInt(offset);
+            } else {
+                offset = bump;
+                bump += chunkSize;
+            }
+            used++;
+            return offset;
+        }
+
+        void push(int offset) {
+            buffer.putInt(offset, freeHead);
+            freeHead = offset;
+            used--;
+        }
+
+        boolean isFull() {
+            return used == chunks;
+        }
+    }
+
+    /**
+     * 一个已经分配的块 作为value保存在堆上的索引中
+     * 读取时增加引用计数,被删除(retire)之后等到没有读取时才真正释放,防止读取到被重新分配的块
+     */
+    static class Slot {
+        private static final AtomicIntegerFieldUpdater<Slot> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Slot.class, "state");
+        /**
+         * 最高位表示已经被删除 其余为正在读取的数量
+         */
+        private static final int RETIRED = Integer.MIN_VALUE;
+
+        final Slab slab;
+        final int offset;
+        final int length;
+        private volatile int state;
+
+        Slot(Slab slab, int offset, int length) {
+            this.slab = slab;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * 块的大小 {@link CacheHashMap.Weigher}
+         */
+        int chunkSize() {
+            return slab.chunkSize;
+        }
+
+        /**
+         * 写入数据 只在分配之后发布之前调用
+         */
+        void write(byte[] bytes) {
+            ByteBuffer buffer = slab.buffer.duplicate();
+            buffer.position(offset);
+            buffer.put(bytes);
+        }
+
+        /**
+         * 读取数据 需要先{@link #acquire()}
+         */
+        <V> V read(OffHeapCacheHashMap.Codec<V> codec) throws IOException {
+            ByteBuffer buffer = slab.buffer.duplicate();
+            buffer.limit(offset + length);
+            buffer.position(offset);
+            return codec.decode(new ByteBufferBackedInputStream(buffer));
+        }
+
+        /**
+         * 开始读取
+         *
+         * @return false: 已经被删除
+         */
+        boolean acquire() {
+            for (; ; ) {
+                int s = state;
+                if (s < 0)
+                    return false;
+                if (STATE.compareAndSet(this, s, s + 1))
+                    return true;
+            }
+        }
+
+        /**
+         * 读取结束 已经被删除并且是最后一个读取时释放
+         */
+        void release(SlabAllocator allocator) {
+            if (STATE.decrementAndGet(this) == RETIRED)
+                allocator.free(this);
+        }
+
+        /**
+         * 删除 没有正在读取时直接释放
+         */
+        void retire(SlabAllocator allocator) {
+            for (; ; ) {
+                int s = state;
+                if (s < 0)
+                    return;
+                if (STATE.compareAndSet(this, s, s | RETIRED)) {
+                    if (s == 0)
+                        allocator.free(this);
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.blr19c.common.collection;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link CacheHashMap}的统计计数 使用LongAdder,多线程记录时几乎没有竞争
+ *
+ * @author blr
+ */
+class StatsCounter {
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder loadSuccessCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+    private final LongAdder totalLoadTime = new LongAdder();
+    private final LongAdder[] removalCounts = new LongAdder[CacheHashMap.RemovalCause.values().length];
+
+    StatsCounter() {
+        for (int i = 0; i < removalCounts.length; i++)
+            removalCounts[i] = new LongAdder();
+    }
+
+    void recordHit() {
+        hitCount.increment();
+    }
+
+    void recordMiss() {
+        missCount.increment();
+    }
+
+    void recordLoadSuccess(long loadTime) {
+        loadSuccessCount.increment();
+        totalLoadTime.add(loadTime);
+    }
+
+    void recordLoadFailure(long loadTime) {
+        loadFailureCount.increment();
+        totalLoadTime.add(loadTime);
+    }
+
+    void recordRemoval(CacheHashMap.RemovalCause cause) {
+        removalCounts[cause.ordinal()].increment();
+    }
+
+    CacheStats snapshot() {
+        long[] counts = new long[removalCounts.length];
+        for (int i = 0; i < counts.length; i++)
+            counts[i] = removalCounts[i].sum();
+        return new CacheStats(hitCount.sum(), missCount.sum(), loadSuccessCount.sum(),
+                loadFailureCount.sum(), totalLoadTime.sum(), counts);
+    }
+}
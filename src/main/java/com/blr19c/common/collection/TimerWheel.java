@@ -0,0 +1,165 @@
+package com.blr19c.common.collection;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 分层时间轮 用于{@link CacheHashMap}的过期删除
+ * 每一层的桶跨度都是2的幂,根据剩余时间放入对应层的桶中
+ * 时间推进时只处理经过的桶,未到期的元素重新放入更低层,新增/删除/过期都是O(1)
+ * 非线程安全,需要在CacheHashMap持有锁的情况下调用
+ *
+ * @author blr
+ */
+class TimerWheel<K> {
+    /**
+     * 每一层的桶数量
+     */
+    static final int[] BUCKETS = {64, 64, 32, 4, 1};
+
+    /**
+     * 每一层单个桶的跨度 1.07s 1.14m 1.22h 1.63d 6.5d
+     */
+    static final long[] SPANS = {
+            ceilingPowerOfTwo(TimeUnit.SECONDS.toNanos(1)),
+            ceilingPowerOfTwo(TimeUnit.MINUTES.toNanos(1)),
+            ceilingPowerOfTwo(TimeUnit.HOURS.toNanos(1)),
+            ceilingPowerOfTwo(TimeUnit.DAYS.toNanos(1)),
+            BUCKETS[3] * ceilingPowerOfTwo(TimeUnit.DAYS.toNanos(1)),
+            BUCKETS[3] * ceilingPowerOfTwo(TimeUnit.DAYS.toNanos(1)),
+    };
+
+    static final long[] SHIFT = {
+            Long.numberOfTrailingZeros(SPANS[0]),
+            Long.numberOfTrailingZeros(SPANS[1]),
+            Long.numberOfTrailingZeros(SPANS[2]),
+            Long.numberOfTrailingZeros(SPANS[3]),
+            Long.numberOfTrailingZeros(SPANS[4]),
+    };
+
+    /**
+     * 每个桶是以哨兵开始的环形链表 使用Node的timerPrev/timerNext
+     */
+    private final CacheHashMap.Node<K>[][] wheel;
+
+    /**
+     * 上一次推进的时间
+     */
+    private long nanos;
+
+    @SuppressWarnings("unchecked")
+    TimerWheel(long nanos) {
+        this.nanos = nanos;
+        this.wheel = (CacheHashMap.Node<K>[][]) new CacheHashMap.Node<?>[BUCKETS.length][];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = (CacheHashMap.Node<K>[]) new CacheHashMap.Node<?>[BUCKETS[i]];
+            for (int j = 0; j < wheel[i].length; j++) {
+                CacheHashMap.Node<K> sentinel = new CacheHashMap.Node<>(null, null, null);
+                sentinel.timerPrev = sentinel.timerNext = sentinel;
+                wheel[i][j] = sentinel;
+            }
+        }
+    }
+
+    /**
+     * 推进到当前时间,到期的元素交给expired处理
+     */
+    void advance(long currentTimeNanos, Consumer<CacheHashMap.Node<K>> expired) {
+        long previousTimeNanos = nanos;
+        nanos = currentTimeNanos;
+        for (int i = 0; i < SHIFT.length; i++) {
+            long previousTicks = previousTimeNanos >>> SHIFT[i];
+            long currentTicks = currentTimeNanos >>> SHIFT[i];
+            if (currentTicks - previousTicks <= 0L)
+                break;
+            expire(i, previousTicks, currentTicks, expired);
+        }
+    }
+
+    /**
+     * 添加或重新计算位置
+     */
+    void schedule(CacheHashMap.Node<K> node) {
+        deschedule(node);
+        if (node.expireNanos == 0L)
+            return;
+        CacheHashMap.Node<K> sentinel = findBucket(node.expireNanos);
+        node.timerPrev = sentinel.timerPrev;
+        node.timerNext = sentinel;
+        sentinel.timerPrev.timerNext = node;
+        sentinel.timerPrev = node;
+    }
+
+    /**
+     * 删除
+     */
+    void deschedule(CacheHashMap.Node<K> node) {
+        if (node.timerNext == null)
+            return;
+        node.timerPrev.timerNext = node.timerNext;
+        node.timerNext.timerPrev = node.timerPrev;
+        node.timerPrev = node.timerNext = null;
+    }
+
+    /**
+     * 清空
+     */
+    void clear() {
+        for (CacheHashMap.Node<K>[] buckets : wheel) {
+            for (CacheHashMap.Node<K> sentinel : buckets) {
+                CacheHashMap.Node<K> node = sentinel.timerNext;
+                while (node != sentinel) {
+                    CacheHashMap.Node<K> next = node.timerNext;
+                    node.timerPrev = node.timerNext = null;
+                    node = next;
+                }
+                sentinel.timerPrev = sentinel.timerNext = sentinel;
+            }
+        }
+    }
+
+    /**
+     * 处理第index层经过的桶
+     */
+    private void expire(int index, long previousTicks, long currentTicks, Consumer<CacheHashMap.Node<K>> expired) {
+        CacheHashMap.Node<K>[] timerWheel = wheel[index];
+        int mask = timerWheel.length - 1;
+        int steps = Math.min(1 + (int) Math.min(currentTicks - previousTicks, Integer.MAX_VALUE - 1), timerWheel.length);
+        int start = (int) (previousTicks & mask);
+        int end = start + steps;
+        for (int i = start; i < end; i++) {
+            CacheHashMap.Node<K> sentinel = timerWheel[i & mask];
+            CacheHashMap.Node<K> node = sentinel.timerNext;
+            sentinel.timerPrev = sentinel.timerNext = sentinel;
+            while (node != sentinel) {
+                CacheHashMap.Node<K> next = node.timerNext;
+                node.timerPrev = node.timerNext = null;
+                if (node.expireNanos - nanos <= 0L)
+                    expired.accept(node);
+                else
+                    schedule(node);
+                node = next;
+            }
+        }
+    }
+
+    /**
+     * 根据剩余时间找到对应的桶
+     */
+    private CacheHashMap.Node<K> findBucket(long time) {
+        long duration = time - nanos;
+        int length = wheel.length - 1;
+        for (int i = 0; i < length; i++) {
+            if (duration < SPANS[i + 1]) {
+                long ticks = time >>> SHIFT[i];
+                int index = (int) (ticks & (wheel[i].length - 1));
+                return wheel[i][index];
+            }
+        }
+        return wheel[length][0];
+    }
+
+    private static long ceilingPowerOfTwo(long x) {
+        return 1L << -Long.numberOfLeadingZeros(x - 1);
+    }
+}
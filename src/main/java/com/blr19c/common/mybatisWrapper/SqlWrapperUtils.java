@@ -4,6 +4,8 @@ import com.baomidou.mybatisplus.core.conditions.AbstractWrapper;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.blr19c.common.collection.PictogramMap;
+import com.blr19c.common.collection.PictogramRowSet;
+import com.blr19c.common.collection.PictogramStream;
 import com.blr19c.common.mybatisWrapper.enums.DataBaseType;
 import com.blr19c.common.mybatisWrapper.wrapper.delete.DeleteWrapper;
 import com.blr19c.common.mybatisWrapper.wrapper.insert.InsertWrapper;
@@ -23,6 +25,7 @@ import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.function.BiFunction;
 import java.util.function.Function;
@@ -133,6 +136,19 @@ public class SqlWrapperUtils {
         return Wrapper.selectListMapSqlWrapper.selectListMap(modelClass, sqlWhereFunction);
     }
 
+    /**
+     * 列表查询 所有行共享列结构,大量数据时比PictogramMap占用更少的内存
+     */
+    public static <T> PictogramRowSet listRows(Class<T> modelClass, LambdaQueryWrapper<T> sqlWhere) {
+        return Wrapper.selectListMapSqlWrapper.selectRowSet(modelClass, l -> sqlWhere);
+    }
+
+    public static <T, R, C extends AbstractWrapper<T, R, C>>
+    PictogramRowSet listRows(Class<T> modelClass,
+                             Function<LambdaQueryWrapper<T>, AbstractWrapper<T, R, C>> sqlWhereFunction) {
+        return Wrapper.selectListMapSqlWrapper.selectRowSet(modelClass, sqlWhereFunction);
+    }
+
     /**
      * 列表PictogramMap分页查询
      */
@@ -204,6 +220,14 @@ public class SqlWrapperUtils {
         return splitBatch(modelClass, modelList, (m, l) -> Wrapper.insertWrapper.insert(m, l));
     }
 
+    /**
+     * 流中的元素每DEFAULT_BATCH_SIZE个新增一次 {@link PictogramStream#chunked(int)}
+     * 在调用的线程中执行,同时只持有一批元素
+     */
+    public static <T> int insert(PictogramStream<T> models) {
+        return consumeBatch(models, SqlWrapperUtils::insert);
+    }
+
     /**
      * 修改如果不存在则新增
      */
@@ -219,6 +243,28 @@ public class SqlWrapperUtils {
         return splitBatch(modelClass, modelList, (m, l) -> Wrapper.mergeWrapper.merge((Class<T>) m, (Collection<T>) l));
     }
 
+    /**
+     * 流中的元素每DEFAULT_BATCH_SIZE个修改或新增一次 {@link #insert(PictogramStream)}
+     */
+    public static <T> int insertOrUpdate(PictogramStream<T> models) {
+        return consumeBatch(models, SqlWrapperUtils::insertOrUpdate);
+    }
+
+    /**
+     * 使用iterator而不是终止操作 保证在当前线程(事务)中执行
+     */
+    private static <T> int consumeBatch(PictogramStream<T> models, Function<List<T>, Integer> function) {
+        if (models == null)
+            return 0;
+        int count = 0;
+        try (PictogramStream<List<T>> chunks = models.chunked(DEFAULT_BATCH_SIZE)) {
+            Iterator<List<T>> iterator = chunks.iterator();
+            while (iterator.hasNext())
+                count += function.apply(iterator.next());
+        }
+        return count;
+    }
+
     private static <T> int splitBatch(Class<?> modelClass, Collection<T> modelList,
                                       BiFunction<Class<?>, Collection<?>, Integer> function) {
         if (modelList == null || modelList.isEmpty())
@@ -1,6 +1,9 @@
 package com.blr19c.common.mybatisWrapper.wrapper;
 
 import com.blr19c.common.collection.PictogramMap;
+import com.blr19c.common.collection.PictogramRow;
+import com.blr19c.common.collection.PictogramRowSet;
+import com.blr19c.common.collection.PictogramTransform;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -12,6 +15,11 @@ import java.util.Map;
  * @author blr
  */
 public class EscapeMarkLinkedHashMap<K, V> extends LinkedHashMap<K, V> {
+    private static final PictogramTransform TRANSFORM = PictogramTransform.of()
+            .clobValueToString()
+            .blobValueToBytes()
+            .underlineKeyToCamel();
+    private static volatile PictogramTransform transform = TRANSFORM;
 
     public EscapeMarkLinkedHashMap(int initialCapacity, float loadFactor) {
         super(initialCapacity, loadFactor);
@@ -32,10 +40,30 @@ public class EscapeMarkLinkedHashMap<K, V> extends LinkedHashMap<K, V> {
         super(initialCapacity, loadFactor, accessOrder);
     }
 
+    /**
+     * clob转为字符串 blob转为byte[](或者{@link #setLazyLobThreshold(long)}) 下划线key转为驼峰
+     * 所有转换在一次遍历中完成,结果放入新的map
+     */
     public PictogramMap toPictogramMap() {
-        return PictogramMap.toPictogramMap(this)
-                .clobValueToString()
-                .blobValueToBytes()
+        return transform.apply(this);
+    }
+
+    /**
+     * 与{@link #toPictogramMap()}相同的转换 结果作为一行放入rowSet,不再创建新的map
+     */
+    public PictogramRow addTo(PictogramRowSet rowSet) {
+        return rowSet.addRow(this, transform);
+    }
+
+    /**
+     * 全局设置 超过threshold(字节数或字符数)的lob写入临时文件,不再全部读取到内存中
+     *
+     * @param threshold 小于0时全部读取到内存中(默认)
+     * @see PictogramMap#lobValueToLazy(long)
+     */
+    public static void setLazyLobThreshold(long threshold) {
+        transform = threshold < 0L ? TRANSFORM : PictogramTransform.of()
+                .lobValueToLazy(threshold)
                 .underlineKeyToCamel();
     }
 }
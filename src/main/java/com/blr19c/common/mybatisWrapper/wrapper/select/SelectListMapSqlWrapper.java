@@ -3,12 +3,14 @@ package com.blr19c.common.mybatisWrapper.wrapper.select;
 import com.baomidou.mybatisplus.core.conditions.AbstractWrapper;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.blr19c.common.collection.PictogramMap;
+import com.blr19c.common.collection.PictogramRowSet;
 import com.blr19c.common.mybatisWrapper.wrapper.EscapeMarkLinkedHashMap;
 import com.blr19c.common.mybatisWrapper.wrapper.SqlWrapper;
 import com.github.pagehelper.PageHelper;
 import com.github.pagehelper.PageInfo;
 
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 
 /**
@@ -35,6 +37,34 @@ public interface SelectListMapSqlWrapper extends SqlWrapper {
         );
     }
 
+    /**
+     * 根据sqlWhere查询列表 所有行共享列结构
+     * 每一行在读取之后立即放入rowSet,不会同时保留所有行的map
+     *
+     * @param modelClass       所依靠表的实体类
+     * @param sqlWhereFunction 查询条件
+     */
+    default <T, R, C extends AbstractWrapper<T, R, C>>
+    PictogramRowSet selectRowSet(Class<T> modelClass,
+                                 Function<LambdaQueryWrapper<T>, AbstractWrapper<T, R, C>> sqlWhereFunction) {
+        initMappedStatement(modelClass, EscapeMarkLinkedHashMap.class);
+        AbstractWrapper<T, R, C> sqlWhere = sqlWhereFunction.apply(new LambdaQueryWrapper<>());
+        PictogramRowSet rowSet = new PictogramRowSet();
+        getSqlSessionTemplate().select(
+                getStatementId(SelectListMapMethod.instance, modelClass),
+                PictogramMap.getInstance(sqlWhere.getParamAlias(), sqlWhere),
+                context -> {
+                    Object row = context.getResultObject();
+                    if (row instanceof EscapeMarkLinkedHashMap)
+                        ((EscapeMarkLinkedHashMap<?, ?>) row).addTo(rowSet);
+                    else
+                        rowSet.addRow((Map<?, ?>) row);
+                }
+        );
+        rowSet.trimToSize();
+        return rowSet;
+    }
+
     /**
      * 根据sqlWhere查询列表并分页
      *
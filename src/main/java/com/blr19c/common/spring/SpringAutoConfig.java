@@ -1,5 +1,11 @@
 package com.blr19c.common.spring;
 
+import com.blr19c.common.collection.CacheHashMap;
+import com.blr19c.common.collection.CacheHashMapMetrics;
+import com.blr19c.common.collection.OffHeapCacheHashMap;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -10,4 +16,35 @@ public class SpringAutoConfig {
     public SpringBeanUtils springBeanUtil() {
         return new SpringBeanUtils();
     }
+
+    /**
+     * 存在micrometer时 把所有CacheHashMap类型的bean注册为指标 bean名称作为缓存名称
+     */
+    @Configuration
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.binder.MeterBinder")
+    static class CacheMetricsConfig {
+
+        @Bean
+        public static CacheHashMapMetrics cacheHashMapMetrics() {
+            return new CacheHashMapMetrics();
+        }
+
+        /**
+         * 缓存bean初始化之后才添加 不会提前创建其他bean
+         * 延迟加载 prototype @RefreshScope的缓存在创建时添加,名称相同时以最后创建的为准
+         */
+        @Bean
+        public static BeanPostProcessor cacheHashMapMetricsRegistrar(ObjectProvider<CacheHashMapMetrics> metrics) {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof CacheHashMap)
+                        metrics.getObject().add(beanName, (CacheHashMap<?, ?>) bean);
+                    else if (bean instanceof OffHeapCacheHashMap)
+                        metrics.getObject().add(beanName, (OffHeapCacheHashMap<?, ?>) bean);
+                    return bean;
+                }
+            };
+        }
+    }
 }
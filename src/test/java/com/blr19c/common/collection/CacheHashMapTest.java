@@ -0,0 +1,340 @@
+package com.blr19c.common.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link CacheHashMap}超出容量时按照删除策略删除,key到Node的索引与map保持一致
+ *
+ * @author blr
+ */
+class CacheHashMapTest {
+
+    @Test
+    void oldestEvictsFirstAdded() {
+        RecordingCache<Integer, String> cache = new RecordingCache<>(CacheHashMap.DeleteStrategyEnum.OLDEST, 3);
+        for (int i = 1; i <= 3; i++)
+            cache.putCache(i, "v" + i);
+        //OLDEST不关心读取
+        cache.getCache(1);
+        cache.putCache(4, "v4");
+        assertEquals(3, cache.size());
+        assertNull(cache.getCache(1));
+        assertEquals("v4", cache.getCache(4));
+        cache.putCache(5, "v5");
+        assertNull(cache.getCache(2));
+        assertEquals(2, cache.getStats().evictionCount());
+        assertEquals(2, cache.getStats().removalCount(CacheHashMap.RemovalCause.SIZE));
+        assertEquals("1:SIZE,2:SIZE", cache.removals());
+    }
+
+    @Test
+    void oldestReplaceDoesNotEvict() {
+        RecordingCache<Integer, String> cache = new RecordingCache<>(CacheHashMap.DeleteStrategyEnum.OLDEST, 2);
+        cache.putCache(1, "a");
+        cache.putCache(2, "b");
+        assertEquals("a", cache.putCache(1, "c"));
+        assertEquals(2, cache.size());
+        assertEquals("1:REPLACED", cache.removals());
+        //替换不改变添加顺序
+        cache.putCache(3, "d");
+        assertNull(cache.getCache(1));
+        assertEquals("b", cache.getCache(2));
+    }
+
+    @Test
+    void leastUsedEvictsLowestFrequency() {
+        RecordingCache<String, Integer> cache = new RecordingCache<>(CacheHashMap.DeleteStrategyEnum.LEAST_USED, 3);
+        cache.putCache("a", 1);
+        cache.putCache("b", 2);
+        cache.putCache("c", 3);
+        for (int i = 0; i < 3; i++)
+            cache.getCache("a");
+        for (int i = 0; i < 2; i++)
+            cache.getCache("b");
+        cache.putCache("d", 4);
+        assertEquals(3, cache.size());
+        assertNull(cache.getCache("c"));
+        //使用次数相同时先添加的先删除
+        cache.putCache("e", 5);
+        assertNull(cache.getCache("d"));
+        assertEquals(Integer.valueOf(1), cache.getCache("a"));
+        assertEquals(Integer.valueOf(2), cache.getCache("b"));
+        assertEquals(Integer.valueOf(5), cache.getCache("e"));
+        assertEquals("c:SIZE,d:SIZE", cache.removals());
+    }
+
+    @Test
+    void leastUsedAfterManyReads() {
+        //读取次数超过读缓冲区的大小
+        CacheHashMap<Integer, Integer> cache = new CacheHashMap<>(CacheHashMap.DeleteStrategyEnum.LEAST_USED, 10);
+        for (int i = 0; i < 10; i++)
+            cache.putCache(i, i);
+        for (int round = 0; round < 100; round++)
+            for (int i = 1; i < 10; i++)
+                cache.getCache(i);
+        cache.putCache(10, 10);
+        assertNull(cache.getCache(0));
+        for (int i = 1; i <= 10; i++)
+            assertEquals(Integer.valueOf(i), cache.getCache(i));
+    }
+
+    @Test
+    void comparatorEvictsLastWhenNothingIsNew() throws InterruptedException {
+        RecordingCache<Integer, String> cache = new RecordingCache<>(CacheHashMap.DeleteStrategyEnum.OLDEST, 3);
+        cache.setComparator(Comparator.comparing(node -> node.key));
+        for (int i = 1; i <= 3; i++)
+            cache.putCache(i, "v" + i);
+        //超过10毫秒之后没有受保护的元素 删除排序最后的
+        Thread.sleep(20);
+        cache.putCache(0, "v0");
+        assertEquals(3, cache.size());
+        assertNull(cache.getCache(3));
+        assertEquals("v0", cache.getCache(0));
+        assertEquals("3:SIZE", cache.removals());
+    }
+
+    @Test
+    void sizeStaysBoundedUnderChurn() {
+        for (CacheHashMap.DeleteStrategyEnum strategy : CacheHashMap.DeleteStrategyEnum.values()) {
+            CacheHashMap<Integer, Integer> cache = new CacheHashMap<>(strategy, 100);
+            for (int i = 0; i < 10_000; i++) {
+                cache.putCache(i, i);
+                cache.getCache(i % 150);
+                assertTrue(cache.size() <= 100);
+            }
+            assertEquals(100, cache.size());
+            assertEquals(9_900, cache.getStats().evictionCount());
+        }
+    }
+
+    @Test
+    void indexFollowsPutAndRemove() {
+        CacheHashMap<Integer, String> cache = new CacheHashMap<>(CacheHashMap.DeleteStrategyEnum.LEAST_USED, 10);
+        for (int i = 0; i < 8; i++)
+            cache.putCache(i, "v" + i);
+        CacheHashMap.Node<Integer> node = cache.getNode(3);
+        //替换value时Node不变
+        assertEquals("v3", cache.putCache(3, "x"));
+        assertSame(node, cache.getNode(3));
+        assertEquals("x", cache.getCache(3));
+        assertEquals("x", cache.removeCache(3));
+        assertTrue(node.retired);
+        assertNull(cache.getNode(3));
+        assertNull(cache.removeCache(3));
+        //删除之后重新添加是新的Node
+        cache.putCache(3, "y");
+        assertFalse(node == cache.getNode(3));
+        //继承的ConcurrentHashMap方法也会维护索引
+        assertEquals("v4", cache.remove(cache.getNode(4)));
+        assertFalse(cache.remove(cache.getNode(5), "other"));
+        assertTrue(cache.remove(cache.getNode(5), "v5"));
+        cache.entrySet().removeIf(entry -> entry.getKey().key == 6);
+        cache.values().removeIf("v7"::equals);
+        assertConsistent(cache, 10);
+        assertEquals(4, cache.size());
+        cache.clear();
+        assertConsistent(cache, 10);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void indexFollowsEviction() {
+        for (CacheHashMap.DeleteStrategyEnum strategy : CacheHashMap.DeleteStrategyEnum.values()) {
+            CacheHashMap<Integer, Integer> cache = new CacheHashMap<>(strategy, 50);
+            for (int i = 0; i < 500; i++) {
+                cache.putCache(i % 120, i);
+                cache.getCache(i % 7);
+                if (i % 5 == 0)
+                    cache.removeCache(i % 60);
+            }
+            assertConsistent(cache, 120);
+        }
+    }
+
+    @Test
+    void indexFollowsExpiry() throws InterruptedException {
+        CacheHashMap<Integer, Integer> cache = new CacheHashMap<>(CacheHashMap.DeleteStrategyEnum.OLDEST, 10);
+        cache.setExpireAfterWrite(Duration.ofMillis(50));
+        for (int i = 0; i < 5; i++)
+            cache.putCache(i, i);
+        Thread.sleep(100);
+        //时间轮的精度是1秒 读取到已经过期的元素时直接删除
+        for (int i = 0; i < 5; i++)
+            assertNull(cache.getCache(i));
+        cache.putCache(5, 5);
+        assertConsistent(cache, 10);
+        assertEquals(1, cache.size());
+        assertEquals(5, cache.getStats().removalCount(CacheHashMap.RemovalCause.EXPIRED));
+        Thread.sleep(100);
+        assertNull(cache.getCache(5));
+        assertNull(cache.getNode(5));
+        assertConsistent(cache, 10);
+        //已经过期的key替换时重新添加
+        cache.putCache(6, 6);
+        CacheHashMap.Node<Integer> node = cache.getNode(6);
+        Thread.sleep(100);
+        cache.putCache(6, 7);
+        assertFalse(node == cache.getNode(6));
+        assertEquals(Integer.valueOf(7), cache.getCache(6));
+        assertConsistent(cache, 10);
+    }
+
+    @Test
+    void indexFollowsConcurrentWrites() throws Exception {
+        CacheHashMap<Integer, Integer> cache = new CacheHashMap<>(64, .75F, 16,
+                CacheHashMap.DeleteStrategyEnum.LEAST_USED, 64, 4, false);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++)
+                futures.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 50_000; i++) {
+                        int key = random.nextInt(200);
+                        switch (random.nextInt(3)) {
+                            case 0:
+                                cache.putCache(key, key);
+                                break;
+                            case 1:
+                                cache.getCache(key);
+                                break;
+                            default:
+                                cache.removeCache(key);
+                        }
+                    }
+                }));
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertConsistent(cache, 200);
+        assertTrue(cache.size() <= 64);
+    }
+
+    @Test
+    void strictModeEvictsFromOtherSegments() {
+        RecordingCache<Integer, Integer> cache = new RecordingCache<>(CacheHashMap.DeleteStrategyEnum.OLDEST, 8, 4, false);
+        List<Integer> first = keysInSegment(0, 4, 9);
+        List<Integer> second = keysInSegment(1, 4, 1);
+        //全部在同一段中 严格模式只限制总数量
+        for (int key : first.subList(0, 8))
+            cache.putCache(key, key);
+        assertEquals(8, cache.size());
+        assertEquals("", cache.removals());
+        //第二段中只有新增的元素 从第一段删除最老的
+        cache.putCache(second.get(0), 0);
+        assertEquals(8, cache.size());
+        assertEquals(first.get(0) + ":SIZE", cache.removals());
+        assertEquals(Integer.valueOf(0), cache.getCache(second.get(0)));
+        //第一段自己超出时删除本段的
+        cache.putCache(first.get(8), 0);
+        assertEquals(8, cache.size());
+        assertEquals(first.get(0) + ":SIZE," + first.get(1) + ":SIZE", cache.removals());
+        assertConsistent(cache, 1000);
+    }
+
+    @Test
+    void approximateModeLimitsEachSegment() {
+        RecordingCache<Integer, Integer> cache = new RecordingCache<>(CacheHashMap.DeleteStrategyEnum.OLDEST, 8, 4, true);
+        List<Integer> first = keysInSegment(0, 4, 8);
+        for (int key : first)
+            cache.putCache(key, key);
+        //每段最多8/4个
+        assertEquals(2, cache.size());
+        assertEquals(Integer.valueOf(first.get(7)), cache.getCache(first.get(7)));
+        for (int key : keysInSegment(1, 4, 3))
+            cache.putCache(key, key);
+        assertEquals(4, cache.size());
+        assertConsistent(cache, 1000);
+    }
+
+    @Test
+    void strictModeStaysBoundedUnderConcurrentWrites() throws Exception {
+        CacheHashMap<Integer, Integer> cache = new CacheHashMap<>(32, .75F, 16,
+                CacheHashMap.DeleteStrategyEnum.OLDEST, 32, 8, false);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++)
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 20_000; i++)
+                        cache.putCache(ThreadLocalRandom.current().nextInt(1000), i);
+                }));
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(cache.size() <= 32, "size:" + cache.size());
+        assertConsistent(cache, 1000);
+    }
+
+    /**
+     * key到Node的索引与map中的元素一一对应
+     */
+    static void assertConsistent(CacheHashMap<Integer, ?> cache, int keys) {
+        Map<Integer, CacheHashMap.Node<Integer>> stored = new HashMap<>();
+        for (CacheHashMap.Node<Integer> node : cache.keySet()) {
+            assertFalse(node.retired);
+            assertNull(stored.put(node.key, node));
+        }
+        int indexed = 0;
+        for (int key = 0; key < keys; key++) {
+            CacheHashMap.Node<Integer> node = cache.getNode(key);
+            assertSame(stored.get(key), node);
+            if (node != null)
+                indexed++;
+        }
+        assertEquals(stored.size(), indexed);
+        assertEquals(cache.size(), indexed);
+    }
+
+    /**
+     * 与CacheHashMap分段时使用的hash相同 找到落在第segment段的count个key
+     */
+    static List<Integer> keysInSegment(int segment, int segments, int count) {
+        int shift = 32 - Integer.numberOfTrailingZeros(segments);
+        List<Integer> keys = new ArrayList<>();
+        for (int key = 0; keys.size() < count; key++)
+            if ((Integer.hashCode(key) * 0x9E3779B9) >>> shift == segment)
+                keys.add(key);
+        return keys;
+    }
+
+    /**
+     * 按顺序记录删除的key和原因
+     */
+    static class RecordingCache<K, V> extends CacheHashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        final List<String> removals = new ArrayList<>();
+
+        RecordingCache(DeleteStrategyEnum deleteStrategyEnum, int maximumCapacity) {
+            super(deleteStrategyEnum, maximumCapacity);
+        }
+
+        RecordingCache(DeleteStrategyEnum deleteStrategyEnum, int maximumCapacity, int segments,
+                       boolean approximateCapacity) {
+            super(maximumCapacity, .75F, 16, deleteStrategyEnum, maximumCapacity, segments, approximateCapacity);
+        }
+
+        @Override
+        protected synchronized void onRemoval(K key, V value, RemovalCause cause) {
+            removals.add(key + ":" + cause);
+        }
+
+        synchronized String removals() {
+            return String.join(",", removals);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.blr19c.common.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link CachePolicy.TinyLfu}的准入和{@link FrequencySketch}的计数
+ *
+ * @author blr
+ */
+class CachePolicyTest {
+
+    @Test
+    void tinyLfuRejectsCandidateWithoutHigherFrequency() {
+        CachePolicy<String> policy = CachePolicy.of(CacheHashMap.DeleteStrategyEnum.TINY_LFU, 10);
+        CacheHashMap.Node<String> a = node("a"), b = node("b"), c = node("c");
+        policy.onAdd(a);
+        policy.onAdd(b);
+        policy.onAdd(c);
+        //窗口只有1个位置 a和b进入试用区 b是候选者 a是牺牲者 频率相同时留下a
+        assertEquals(CachePolicy.TinyLfu.WINDOW, c.region);
+        assertEquals(CachePolicy.TinyLfu.PROBATION, a.region);
+        assertSame(b, policy.victim(c));
+    }
+
+    @Test
+    void tinyLfuAdmitsCandidateWithHigherFrequency() {
+        CachePolicy<String> policy = CachePolicy.of(CacheHashMap.DeleteStrategyEnum.TINY_LFU, 10);
+        //b之前被添加过多次 频率高于a
+        for (int i = 0; i < 3; i++) {
+            CacheHashMap.Node<String> previous = node("b");
+            policy.onAdd(previous);
+            policy.onRemove(previous);
+        }
+        CacheHashMap.Node<String> a = node("a"), b = node("b"), c = node("c");
+        policy.onAdd(a);
+        policy.onAdd(b);
+        policy.onAdd(c);
+        assertSame(a, policy.victim(c));
+    }
+
+    @Test
+    void tinyLfuPromotesAndDemotes() {
+        CachePolicy<Integer> policy = CachePolicy.of(CacheHashMap.DeleteStrategyEnum.TINY_LFU, 10);
+        List<CacheHashMap.Node<Integer>> nodes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            nodes.add(node(i));
+            policy.onAdd(nodes.get(i));
+        }
+        //保护区最多7个 超出时最早晋升的降级到试用区
+        for (int i = 0; i < 8; i++)
+            policy.onAccess(nodes.get(i));
+        assertEquals(CachePolicy.TinyLfu.PROBATION, nodes.get(0).region);
+        for (int i = 1; i < 8; i++)
+            assertEquals(CachePolicy.TinyLfu.PROTECTED, nodes.get(i).region);
+        assertEquals(CachePolicy.TinyLfu.WINDOW, nodes.get(9).region);
+        policy.onRemove(nodes.get(3));
+        assertEquals(0, nodes.get(3).region);
+        policy.clear();
+        for (CacheHashMap.Node<Integer> node : nodes)
+            assertEquals(0, node.region);
+    }
+
+    @Test
+    void tinyLfuKeepsHotKeysThroughScan() {
+        CacheHashMap<Integer, Integer> cache = new CacheHashMap<>(CacheHashMap.DeleteStrategyEnum.TINY_LFU, 100);
+        for (int i = 0; i < 50; i++)
+            cache.putCache(i, i);
+        for (int round = 0; round < 5; round++)
+            for (int i = 0; i < 50; i++)
+                cache.getCache(i);
+        //一次性扫描的元素不能挤掉热点元素
+        for (int i = 1000; i < 1500; i++)
+            cache.putCache(i, i);
+        assertEquals(100, cache.size());
+        for (int i = 0; i < 50; i++)
+            assertEquals(Integer.valueOf(i), cache.getCache(i));
+    }
+
+    @Test
+    void sketchCountsSaturateAndAge() {
+        FrequencySketch sketch = new FrequencySketch(16);
+        assertEquals(0, sketch.frequency("x"));
+        for (int i = 0; i < 10; i++)
+            sketch.increment("x");
+        assertEquals(10, sketch.frequency("x"));
+        for (int i = 0; i < 10; i++)
+            sketch.increment("x");
+        //4bit计数器最大15
+        assertEquals(15, sketch.frequency("x"));
+        //达到采样数量(容量的10倍)之后全部减半
+        for (int i = 0; i < 160; i++)
+            sketch.increment(i);
+        int frequency = sketch.frequency("x");
+        assertTrue(frequency >= 7 && frequency < 15, "frequency:" + frequency);
+        sketch.clear();
+        assertEquals(0, sketch.frequency("x"));
+    }
+
+    private static <K> CacheHashMap.Node<K> node(K key) {
+        return new CacheHashMap.Node<>(null, null, key);
+    }
+}
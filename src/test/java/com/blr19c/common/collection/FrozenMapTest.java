@@ -0,0 +1,139 @@
+package com.blr19c.common.collection;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link FrozenMap}在hash冲突时的查找 以及所有修改方法都会抛出UnsupportedOperationException
+ *
+ * @author blr
+ */
+class FrozenMapTest {
+
+    @Test
+    void collidingHashesAreFoundByProbing() {
+        Map<Object, Object> source = new LinkedHashMap<>();
+        for (int i = 0; i < 20; i++)
+            source.put(new Colliding(i), i);
+        source.put(null, "null");
+        source.put("other", null);
+        FrozenMap frozen = FrozenMap.of(source);
+        assertEquals(source.size(), frozen.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i, frozen.get(new Colliding(i)));
+            assertTrue(frozen.containsKey(new Colliding(i)));
+        }
+        //与已有的key冲突但是不存在
+        assertNull(frozen.get(new Colliding(20)));
+        assertFalse(frozen.containsKey(new Colliding(-1)));
+        assertEquals("default", frozen.getOrDefault(new Colliding(20), "default"));
+        assertEquals("null", frozen.get(null));
+        assertTrue(frozen.containsKey("other"));
+        assertNull(frozen.getOrDefault("other", "default"));
+        assertEquals(source, frozen);
+        assertEquals(source.hashCode(), frozen.hashCode());
+        //保持原来的顺序
+        assertEquals(new ArrayList<>(source.keySet()), new ArrayList<>(frozen.keySet()));
+        assertEquals(new ArrayList<>(source.values()), new ArrayList<>(frozen.values()));
+    }
+
+    @Test
+    void lookupsMatchSourceForManySizes() {
+        for (int size = 0; size <= 70; size++) {
+            Map<Object, Object> source = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++)
+                source.put("key" + i, i % 3 == 0 ? null : i);
+            FrozenMap frozen = FrozenMap.of(source);
+            assertEquals(source, frozen);
+            for (int i = -1; i <= size; i++) {
+                assertEquals(source.containsKey("key" + i), frozen.containsKey("key" + i));
+                assertEquals(source.get("key" + i), frozen.get("key" + i));
+            }
+            assertEquals(source.entrySet(), frozen.entrySet());
+        }
+    }
+
+    @Test
+    void ofFrozenMapReturnsSameInstance() {
+        FrozenMap frozen = FrozenMap.of(Collections.singletonMap("a", 1));
+        assertSame(frozen, FrozenMap.of(frozen));
+        PictogramMap map = PictogramMap.toPictogramMap(Collections.singletonMap("a", 1)).freeze();
+        assertTrue(map.isFrozen());
+        assertSame(map, map.freeze());
+        assertEquals(Integer.valueOf(1), map.getInteger("a"));
+    }
+
+    @Test
+    void mutatorsThrow() {
+        Map<Object, Object> source = new LinkedHashMap<>();
+        source.put("a", 1);
+        source.put("b", 2);
+        FrozenMap frozen = FrozenMap.of(source);
+        assertFrozen(() -> frozen.put("c", 3));
+        //不会产生变化的修改也会抛出
+        assertFrozen(() -> frozen.put("a", 1));
+        assertFrozen(() -> frozen.putAll(Collections.emptyMap()));
+        assertFrozen(() -> frozen.remove("a"));
+        assertFrozen(() -> frozen.remove("missing"));
+        assertFrozen(() -> frozen.remove("a", 1));
+        assertFrozen(frozen::clear);
+        assertFrozen(() -> frozen.replaceAll((k, v) -> v));
+        assertFrozen(() -> frozen.putIfAbsent("a", 1));
+        assertFrozen(() -> frozen.replace("a", 1, 2));
+        assertFrozen(() -> frozen.replace("a", 2));
+        assertFrozen(() -> frozen.computeIfAbsent("a", k -> 1));
+        assertFrozen(() -> frozen.computeIfPresent("a", (k, v) -> v));
+        assertFrozen(() -> frozen.compute("a", (k, v) -> v));
+        assertFrozen(() -> frozen.merge("a", 1, (v1, v2) -> v1));
+        assertEquals(source, frozen);
+    }
+
+    @Test
+    void viewsThrow() {
+        FrozenMap frozen = FrozenMap.of(Collections.singletonMap("a", 1));
+        for (Collection<?> view : Arrays.asList(frozen.keySet(), frozen.values(), frozen.entrySet())) {
+            assertFrozen(() -> view.remove("a"));
+            assertFrozen(() -> view.removeAll(Collections.emptyList()));
+            assertFrozen(() -> view.retainAll(Collections.emptyList()));
+            assertFrozen(() -> view.removeIf(e -> false));
+            assertFrozen(view::clear);
+            Iterator<?> iterator = view.iterator();
+            iterator.next();
+            assertFrozen(iterator::remove);
+            assertFalse(iterator.hasNext());
+            assertThrows(NoSuchElementException.class, iterator::next);
+        }
+        Map.Entry<Object, Object> entry = frozen.entrySet().iterator().next();
+        assertFrozen(() -> entry.setValue(2));
+        assertEquals(Collections.singletonMap("a", 1), frozen);
+    }
+
+    private static void assertFrozen(Executable executable) {
+        assertThrows(UnsupportedOperationException.class, executable);
+    }
+
+    /**
+     * 所有的key hash相同
+     */
+    private static final class Colliding {
+        private final int value;
+
+        Colliding(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Colliding && ((Colliding) o).value == value;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.blr19c.common.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link FusedPredicate}的判断顺序 以及基本类型的流使用的合并条件
+ *
+ * @author blr
+ */
+class FusedPredicateTest {
+
+    @Test
+    void staticOrderStopsAtFirstRejection() {
+        AtomicInteger first = new AtomicInteger();
+        AtomicInteger second = new AtomicInteger();
+        FusedPredicate<Integer> fused = FusedPredicate.of(Arrays.<Predicate<Integer>>asList(
+                i -> first.incrementAndGet() > 0 && i % 2 == 0,
+                i -> second.incrementAndGet() > 0 && i % 3 == 0), false);
+        List<Integer> result = IntStream.range(0, 12).boxed().filter(fused).collect(Collectors.toList());
+        assertEquals(Arrays.asList(0, 6), result);
+        assertEquals(12, first.get());
+        assertEquals(6, second.get());
+    }
+
+    @Test
+    void adaptiveKeepsResultsAndMovesSelectivePredicateFirst() {
+        AtomicInteger broad = new AtomicInteger();
+        AtomicInteger selective = new AtomicInteger();
+        FusedPredicate<Integer> fused = FusedPredicate.of(Arrays.<Predicate<Integer>>asList(
+                i -> broad.incrementAndGet() > 0 && i % 100 != 1,
+                i -> selective.incrementAndGet() > 0 && i % 100 == 0), true);
+        List<Integer> numbers = IntStream.range(0, 200_000).boxed().collect(Collectors.toList());
+        List<Integer> expected = numbers.stream().filter(i -> i % 100 == 0).collect(Collectors.toList());
+        assertEquals(expected, numbers.stream().filter(fused).collect(Collectors.toList()));
+        //调整顺序之后几乎所有元素只判断淘汰率高的条件
+        broad.set(0);
+        selective.set(0);
+        assertEquals(expected, numbers.stream().filter(fused).collect(Collectors.toList()));
+        assertTrue(broad.get() < numbers.size() / 2, "broad:" + broad.get());
+        assertEquals(expected, numbers.parallelStream().filter(fused).collect(Collectors.toList()));
+    }
+
+    @Test
+    void nullPredicateIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> FusedPredicate.of(Arrays.<Predicate<Object>>asList(o -> true, null), false));
+        assertThrows(IllegalArgumentException.class, () -> FusedPredicate.ofInt(new IntPredicate[]{i -> true, null}));
+        assertThrows(IllegalArgumentException.class, () -> PictogramStream.of(1, 2).search(o -> true, null));
+        assertThrows(IllegalArgumentException.class, () -> PictogramLongStream.of(1L).search(l -> true, null));
+    }
+
+    @Test
+    void primitiveSearchUsesGivenOrder() {
+        AtomicInteger second = new AtomicInteger();
+        PictogramIntStream.IntList result = PictogramIntStream.range(0, 12)
+                .search(i -> i % 2 == 0, i -> second.incrementAndGet() > 0 && i % 3 == 0);
+        assertEquals(Arrays.asList(0, 6), result);
+        assertEquals(6, second.get());
+        //调用之后修改数组不影响合并的条件
+        IntPredicate[] predicates = {i -> i > 5};
+        IntPredicate fused = FusedPredicate.ofInt(predicates);
+        predicates[0] = i -> false;
+        assertTrue(fused.test(6));
+        assertTrue(FusedPredicate.ofInt(new IntPredicate[0]).test(0));
+    }
+
+    @Test
+    void primitiveSearchOneAndFirst() {
+        assertEquals(6, PictogramIntStream.range(0, 12).searchOne(i -> i % 6 == 0, i -> i > 0));
+        assertEquals(OptionalInt.of(3), PictogramIntStream.range(0, 12).searchFirst(i -> i > 2));
+        assertEquals(OptionalLong.of(4L), PictogramLongStream.of(1L, 4L, 9L).searchFirst(l -> l > 1L));
+        assertEquals(9L, PictogramLongStream.of(1L, 4L, 9L).searchOne(l -> l > 4L));
+        assertEquals(Arrays.asList(4L, 9L), PictogramLongStream.of(1L, 4L, 9L).search(l -> l > 1L));
+        assertEquals(2.5D, PictogramDoubleStream.of(0.5D, 2.5D).searchOne(d -> d > 1D));
+        assertEquals(Collections.singletonList(0.5D), PictogramDoubleStream.of(0.5D, 2.5D).search(d -> d < 1D));
+        assertFalse(PictogramDoubleStream.of(0.5D).searchFirst(d -> d > 1D).isPresent());
+        IllegalArgumentException none = assertThrows(IllegalArgumentException.class,
+                () -> PictogramIntStream.range(0, 12).searchOne(i -> i > 20));
+        assertEquals("No results found", none.getMessage());
+        IllegalArgumentException many = assertThrows(IllegalArgumentException.class,
+                () -> PictogramDoubleStream.of(1D, 2D).searchOne(d -> d > 0D));
+        assertEquals("There is more than one result", many.getMessage());
+        assertEquals("There is more than one result", assertThrows(IllegalArgumentException.class,
+                () -> PictogramStream.of(1, 2).searchOneOrNull(i -> i > 0)).getMessage());
+        assertNull(PictogramStream.of(1, 2).searchOneOrNull(i -> i > 2));
+    }
+}
@@ -0,0 +1,115 @@
+package com.blr19c.common.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link CacheHashMap#getOrLoad(java.lang.Object, java.util.function.Function)}同一个key只加载一次
+ * {@link LoadingCacheHashMap}按照写入时间刷新
+ *
+ * @author blr
+ */
+class LoadingCacheHashMapTest {
+
+    @Test
+    void loadsOncePerKey() throws Exception {
+        CacheHashMap<String, Integer> cache = new CacheHashMap<>();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++)
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return cache.getOrLoad("k", key -> {
+                        loads.incrementAndGet();
+                        sleep(50);
+                        return 1;
+                    });
+                }));
+            start.countDown();
+            for (Future<Integer> future : futures)
+                assertEquals(Integer.valueOf(1), future.get());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getStats().loadSuccessCount());
+        assertTrue(cache.loading.isEmpty());
+    }
+
+    @Test
+    void loaderFailureIsRethrownAndNotCached() {
+        CacheHashMap<String, Integer> cache = new CacheHashMap<>();
+        assertThrows(IllegalArgumentException.class, () -> cache.getOrLoad("k", key -> {
+            throw new IllegalArgumentException(key);
+        }));
+        assertNull(cache.getOrLoad("k", key -> null));
+        assertEquals(Integer.valueOf(2), cache.getOrLoad("k", key -> 2));
+        assertEquals(2, cache.getStats().loadFailureCount());
+        assertTrue(cache.loading.isEmpty());
+    }
+
+    @Test
+    void recursiveLoadFails() {
+        CacheHashMap<String, Integer> cache = new CacheHashMap<>();
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> cache.getOrLoad("k", key -> cache.getOrLoad(key, k -> 1)));
+        assertTrue(e.getMessage().startsWith("Recursive load"));
+        //失败之后不会残留正在加载的状态
+        assertTrue(cache.loading.isEmpty());
+        assertEquals(Integer.valueOf(1), cache.getOrLoad("k", key -> 1));
+        //加载其他key不受影响
+        assertEquals(Integer.valueOf(3), cache.getOrLoad("a", key -> cache.getOrLoad("b", k -> 3)));
+    }
+
+    @Test
+    void recursiveLoadingCacheFails() {
+        AtomicReference<LoadingCacheHashMap<String, Integer>> cache = new AtomicReference<>();
+        cache.set(new LoadingCacheHashMap<>(key -> cache.get().getOrLoad(key)));
+        assertThrows(IllegalStateException.class, () -> cache.get().getOrLoad("k"));
+        assertTrue(cache.get().loading.isEmpty());
+    }
+
+    @Test
+    void refreshIgnoresEntriesWrittenRecently() {
+        AtomicInteger loads = new AtomicInteger();
+        LoadingCacheHashMap<String, Integer> cache = new LoadingCacheHashMap<>(key -> loads.incrementAndGet());
+        cache.putCache("k", 0);
+        //在设置之前写入的元素也记录了写入时间 不会立即刷新
+        cache.setRefreshAfterWrite(Duration.ofHours(1), Runnable::run);
+        assertEquals(Integer.valueOf(0), cache.getOrLoad("k"));
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    void refreshReloadsAfterWrite() throws InterruptedException {
+        AtomicInteger loads = new AtomicInteger();
+        LoadingCacheHashMap<String, Integer> cache = new LoadingCacheHashMap<>(key -> loads.incrementAndGet());
+        cache.setRefreshAfterWrite(Duration.ofMillis(20), Runnable::run);
+        assertEquals(Integer.valueOf(1), cache.getOrLoad("k"));
+        assertEquals(Integer.valueOf(1), cache.getOrLoad("k"));
+        Thread.sleep(50);
+        //返回旧的value 同时重新加载
+        assertEquals(Integer.valueOf(1), cache.getOrLoad("k"));
+        assertEquals(Integer.valueOf(2), cache.getCache("k"));
+        assertEquals(2, loads.get());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
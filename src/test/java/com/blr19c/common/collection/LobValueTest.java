@@ -0,0 +1,72 @@
+package com.blr19c.common.collection;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.rowset.serial.SerialBlob;
+import javax.sql.rowset.serial.SerialClob;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link LobValue}在json序列化和按需读取时与byte[]/String相同
+ *
+ * @author blr
+ */
+class LobValueTest {
+    private static final byte[] CONTENT = "blob内容".getBytes(StandardCharsets.UTF_8);
+    private static final String REMARK = "clob内容";
+
+    @Test
+    void toJsonString() throws Exception {
+        PictogramMap map = lobMap();
+        String json = map.toJsonString();
+        assertEquals("{\"id\":1,\"content\":\"" + Base64.getEncoder().encodeToString(CONTENT)
+                + "\",\"remark\":\"" + REMARK + "\"}", json);
+        PictogramMap parsed = PictogramMap.toPictogramMapAsJson(json);
+        assertArrayEquals(CONTENT, Base64.getDecoder().decode(parsed.getString("content")));
+        assertEquals(REMARK, parsed.getString("remark"));
+    }
+
+    @Test
+    void toModel() throws Exception {
+        LobModel model = lobMap().toModel(new TypeReference<LobModel>() {
+        });
+        assertEquals(1, model.id);
+        assertArrayEquals(CONTENT, model.content);
+        assertEquals(REMARK, model.remark);
+    }
+
+    @Test
+    void readStringValue() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("remark", REMARK);
+        data.put("id", 1);
+        PictogramMap map = PictogramMap.toPictogramMap(data);
+        assertArrayEquals(REMARK.getBytes(StandardCharsets.UTF_8), map.getBytes("remark"));
+        assertThrows(IllegalArgumentException.class, () -> map.getBytes("id"));
+        assertThrows(IllegalArgumentException.class, () -> map.getInputStream("id"));
+        assertThrows(IllegalArgumentException.class, () -> map.getReader("id"));
+    }
+
+    private static PictogramMap lobMap() throws Exception {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("id", 1);
+        data.put("content", new SerialBlob(CONTENT));
+        data.put("remark", new SerialClob(REMARK.toCharArray()));
+        //阈值为0时全部写入临时文件
+        return PictogramMap.toPictogramMap(data).lobValueToLazy(0);
+    }
+
+    public static class LobModel {
+        public int id;
+        public byte[] content;
+        public String remark;
+    }
+}
@@ -0,0 +1,381 @@
+package com.blr19c.common.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 生成的{@link ModelMapper}与{@link ModelMapper.ReflectiveModelMapper}对同一个map的转换结果相同
+ *
+ * @author blr
+ */
+public class ModelMapperTest {
+
+    @Test
+    void generatedMatchesReflective() {
+        ModelMapper<Row> generated = ModelMapper.of(Row.class);
+        assertGenerated(generated, Row.class);
+        ModelMapper<Row> reflective = new ModelMapper.ReflectiveModelMapper<>(Row.class);
+        PictogramMap map = PictogramMap.toPictogramMap(values());
+        Row fromGenerated = map.toModel(generated);
+        Row fromReflective = map.toModel(reflective);
+        assertRow(fromGenerated);
+        assertRow(fromReflective);
+        assertEquals(toMap(reflective, fromReflective), toMap(generated, fromGenerated));
+        assertEquals(toMap(reflective, fromGenerated), toMap(generated, fromReflective));
+    }
+
+    @Test
+    void primitivesAreUnboxedFromAnyNumber() {
+        Map<String, Object> values = new HashMap<>();
+        values.put("id", new BigDecimal("7.9"));
+        values.put("count", 3.5F);
+        values.put("score", 2L);
+        values.put("ratio", new BigDecimal("0.25"));
+        values.put("level", 70_000);
+        values.put("flag", 300);
+        for (ModelMapper<Row> mapper : mappers(Row.class)) {
+            Row row = mapper.toModel(values);
+            assertEquals(7, row.getId());
+            assertEquals(3L, row.getCount());
+            assertEquals(2D, row.getScore());
+            assertEquals(0.25F, row.getRatio());
+            assertEquals((short) 70_000, row.getLevel());
+            assertEquals((byte) 300, row.getFlag());
+        }
+    }
+
+    @Test
+    void nullLeavesDefaultAndWrongTypeFails() {
+        Map<String, Object> values = new HashMap<>();
+        values.put("id", null);
+        values.put("userName", null);
+        for (ModelMapper<Row> mapper : mappers(Row.class)) {
+            Row row = mapper.toModel(values);
+            assertEquals(0, row.getId());
+            assertEquals("default", row.getUserName());
+            assertThrows(ClassCastException.class, () -> mapper.toModel(Collections.singletonMap("id", "1")));
+            assertThrows(ClassCastException.class, () -> mapper.toModel(Collections.singletonMap("userName", 1)));
+        }
+    }
+
+    @Test
+    void aliasesAreUsedAfterName() {
+        Map<String, Object> values = new HashMap<>();
+        values.put("USER_NAME", "upper");
+        for (ModelMapper<Row> mapper : mappers(Row.class))
+            assertEquals("upper", mapper.toModel(values).getUserName());
+        values.put("user_name", "lower");
+        for (ModelMapper<Row> mapper : mappers(Row.class))
+            assertEquals("lower", mapper.toModel(values).getUserName());
+        values.put("userName", "name");
+        for (ModelMapper<Row> mapper : mappers(Row.class))
+            assertEquals("name", mapper.toModel(values).getUserName());
+    }
+
+    @Test
+    void recognizerReplacesAliases() {
+        Map<String, Object> values = new HashMap<>();
+        values.put("user_name", "alias");
+        values.put("USERNAME", "recognized");
+        values.put("ID", 5);
+        List<String> names = new ArrayList<>();
+        for (ModelMapper<Row> mapper : mappers(Row.class)) {
+            names.clear();
+            Row row = mapper.toModel(values, (map, name) -> {
+                names.add(name);
+                return map.get(name.toUpperCase(Locale.ROOT));
+            });
+            assertEquals("recognized", row.getUserName());
+            assertEquals(5, row.getId());
+            //每个可写的属性只调用一次 只读的属性不调用
+            assertEquals(new HashSet<>(names).size(), names.size());
+            assertFalse(names.contains("computed"));
+            assertTrue(names.contains("chained"));
+        }
+    }
+
+    @Test
+    void chainedSetterIsUsed() {
+        for (ModelMapper<Row> mapper : mappers(Row.class)) {
+            assertEquals("c", mapper.toModel(Collections.singletonMap("chained", "c")).getChained());
+            //没有set前缀的方法不是属性
+            assertNull(mapper.toModel(Collections.singletonMap("fluent", "f")).fluent());
+        }
+    }
+
+    @Test
+    void toMapUsesEveryGetter() {
+        Row row = new Row();
+        row.setUserName("blr");
+        row.setChained("c");
+        for (ModelMapper<Row> mapper : mappers(Row.class)) {
+            Map<Object, Object> map = toMap(mapper, row);
+            assertEquals("blr", map.get("userName"));
+            assertEquals("c", map.get("chained"));
+            assertEquals("computed:blr", map.get("computed"));
+            assertEquals(0, map.get("id"));
+            assertFalse(map.containsKey("class"));
+            assertEquals(map, PictogramMap.toPictogramMapAsModel(row, mapper).getMap());
+        }
+    }
+
+    @Test
+    void nonPublicModelUsesReflection() {
+        ModelMapper<Hidden> mapper = ModelMapper.of(Hidden.class);
+        assertTrue(mapper instanceof ModelMapper.ReflectiveModelMapper);
+        Hidden hidden = mapper.toModel(Collections.singletonMap("hidden_value", 3));
+        assertEquals(3, hidden.getHiddenValue());
+    }
+
+    @Test
+    void duplicateDefinitionFallsBackToReflection() {
+        //模拟ClassValue并发计算时其他线程已经定义了同名的类
+        assertNotNull(ModelMapperGenerator.generate(Raced.class));
+        assertNull(ModelMapperGenerator.generate(Raced.class));
+        ModelMapper<Raced> mapper = ModelMapper.of(Raced.class);
+        assertTrue(mapper instanceof ModelMapper.ReflectiveModelMapper);
+        assertEquals("raced", mapper.toModel(Collections.singletonMap("value", "raced")).getValue());
+        assertSame(mapper, ModelMapper.of(Raced.class));
+    }
+
+    @Test
+    void concurrentOfReturnsOneMapper() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        try {
+            List<Future<ModelMapper<Contended>>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++)
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    return ModelMapper.of(Contended.class);
+                }));
+            ModelMapper<Contended> first = futures.get(0).get();
+            for (Future<ModelMapper<Contended>> future : futures)
+                assertSame(first, future.get());
+            assertEquals(9, first.toModel(Collections.singletonMap("value", 9)).getValue());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Map<String, Object> values() {
+        Map<String, Object> values = new HashMap<>();
+        values.put("id", 1L);
+        values.put("count", 2);
+        values.put("score", new BigDecimal("1.5"));
+        values.put("enabled", true);
+        values.put("grade", 'A');
+        values.put("ratio", 0.5D);
+        values.put("level", 3);
+        values.put("flag", (byte) 4);
+        values.put("boxed", 5);
+        values.put("user_name", "blr");
+        values.put("TAGS", Arrays.asList("a", "b"));
+        values.put("chained", "c");
+        values.put("computed", "ignored");
+        return values;
+    }
+
+    private static void assertRow(Row row) {
+        assertEquals(1, row.getId());
+        assertEquals(2L, row.getCount());
+        assertEquals(1.5D, row.getScore());
+        assertTrue(row.isEnabled());
+        assertEquals('A', row.getGrade());
+        assertEquals(0.5F, row.getRatio());
+        assertEquals((short) 3, row.getLevel());
+        assertEquals((byte) 4, row.getFlag());
+        assertEquals(Integer.valueOf(5), row.getBoxed());
+        assertEquals("blr", row.getUserName());
+        assertEquals(Arrays.asList("a", "b"), row.getTags());
+        assertEquals("c", row.getChained());
+        assertEquals("computed:blr", row.getComputed());
+    }
+
+    private static <T> void assertGenerated(ModelMapper<T> mapper, Class<T> type) {
+        assertEquals(type.getName() + "$$ModelMapper", mapper.getClass().getName());
+    }
+
+    private static <T> List<ModelMapper<T>> mappers(Class<T> type) {
+        ModelMapper<T> generated = ModelMapper.of(type);
+        assertGenerated(generated, type);
+        return Arrays.asList(generated, new ModelMapper.ReflectiveModelMapper<>(type));
+    }
+
+    private static <T> Map<Object, Object> toMap(ModelMapper<T> mapper, T model) {
+        Map<Object, Object> map = new HashMap<>();
+        mapper.toMap(model, map);
+        return map;
+    }
+
+    public static class Row {
+        private int id;
+        private long count;
+        private double score;
+        private boolean enabled;
+        private char grade;
+        private float ratio;
+        private short level;
+        private byte flag;
+        private Integer boxed;
+        private String userName = "default";
+        private List<String> tags;
+        private String chained;
+        private String fluent;
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public void setCount(long count) {
+            this.count = count;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        public void setScore(double score) {
+            this.score = score;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public char getGrade() {
+            return grade;
+        }
+
+        public void setGrade(char grade) {
+            this.grade = grade;
+        }
+
+        public float getRatio() {
+            return ratio;
+        }
+
+        public void setRatio(float ratio) {
+            this.ratio = ratio;
+        }
+
+        public short getLevel() {
+            return level;
+        }
+
+        public void setLevel(short level) {
+            this.level = level;
+        }
+
+        public byte getFlag() {
+            return flag;
+        }
+
+        public void setFlag(byte flag) {
+            this.flag = flag;
+        }
+
+        public Integer getBoxed() {
+            return boxed;
+        }
+
+        public void setBoxed(Integer boxed) {
+            this.boxed = boxed;
+        }
+
+        public String getUserName() {
+            return userName;
+        }
+
+        public void setUserName(String userName) {
+            this.userName = userName;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+
+        public String getChained() {
+            return chained;
+        }
+
+        public Row setChained(String chained) {
+            this.chained = chained;
+            return this;
+        }
+
+        public String fluent() {
+            return fluent;
+        }
+
+        public Row fluent(String fluent) {
+            this.fluent = fluent;
+            return this;
+        }
+
+        public String getComputed() {
+            return "computed:" + userName;
+        }
+    }
+
+    static class Hidden {
+        private int hiddenValue;
+
+        public Hidden() {
+        }
+
+        public int getHiddenValue() {
+            return hiddenValue;
+        }
+
+        public void setHiddenValue(int hiddenValue) {
+            this.hiddenValue = hiddenValue;
+        }
+    }
+
+    public static class Raced {
+        private String value;
+
+        public String getValue() {
+            return value;
+        }
+
+        public void setValue(String value) {
+            this.value = value;
+        }
+    }
+
+    public static class Contended {
+        private int value;
+
+        public int getValue() {
+            return value;
+        }
+
+        public void setValue(int value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.blr19c.common.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.text.ParseException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link NumberParser}的结果(包括类型)与{@link org.apache.commons.collections4.MapUtils#getNumber}使用的NumberFormat相同
+ *
+ * @author blr
+ */
+class NumberParserTest {
+    private static final DecimalFormatSymbols SYMBOLS = DecimalFormatSymbols.getInstance();
+
+    @Test
+    void integers() {
+        assertSameAsFormat("0", "-0", "7", "007", "123", "-123",
+                "999999999999999999", "-999999999999999999",
+                "9223372036854775807", "-9223372036854775808", "9223372036854775808");
+        assertEquals(123L, NumberParser.toNumber("123"));
+        assertEquals(-0D, NumberParser.toNumber("-0"));
+    }
+
+    @Test
+    void decimals() {
+        assertSameAsFormat(decimal("1.5"), decimal("-1.25"), decimal("0.1"), decimal("00.50"),
+                decimal("5.0"), decimal("-5.00"), decimal("0.0"), decimal("-0.0"),
+                decimal("12345678901234567.5"), decimal("0.1000000000000000055511151231257827"));
+        assertEquals(1.5D, NumberParser.toNumber(decimal("1.5")));
+        //小数部分都是0时为Long
+        assertEquals(5L, NumberParser.toNumber(decimal("5.0")));
+        assertEquals(-0D, NumberParser.toNumber(decimal("-0.0")));
+    }
+
+    @Test
+    void integralDecimalsKeepPrecision() {
+        //超过2^53的整数不能经过double
+        assertSameAsFormat(decimal("9007199254740993.0"), decimal("123456789012345678.00"),
+                decimal("9223372036854775807.0"), decimal("123456789012345678901.0"));
+        assertEquals(9007199254740993L, NumberParser.toNumber(decimal("9007199254740993.0")));
+        assertEquals(Long.MAX_VALUE, NumberParser.toNumber(decimal("9223372036854775807.0")).longValue());
+    }
+
+    @Test
+    void exponents() {
+        assertSameAsFormat("1" + SYMBOLS.getExponentSeparator() + "3",
+                decimal("1.5") + SYMBOLS.getExponentSeparator() + "-3",
+                "-2" + SYMBOLS.getExponentSeparator() + "2");
+        assertNotNull(NumberParser.toNumber("1" + SYMBOLS.getExponentSeparator() + "3"));
+    }
+
+    @Test
+    void groupingSeparators() {
+        char grouping = SYMBOLS.getGroupingSeparator();
+        assertSameAsFormat("1" + grouping + "234", "-1" + grouping + "234" + grouping + "567",
+                "1" + grouping + "234" + SYMBOLS.getDecimalSeparator() + "5");
+        assertEquals(1234567L, NumberParser.toNumber("1" + grouping + "234" + grouping + "567"));
+    }
+
+    @Test
+    void garbage() {
+        assertNull(NumberParser.toNumber(null));
+        assertNull(NumberParser.toNumber(""));
+        assertNull(NumberParser.toNumber(new Object()));
+        assertSameAsFormat("abc", " 1", "-", ".", "1.", "--1", "12abc");
+        assertNull(NumberParser.toNumber("abc"));
+        //不是数字的结果也会缓存
+        assertSame(NumberParser.NOT_NUMBER, NumberParser.FORMAT_PARSED.getCache("abc"));
+        assertNull(NumberParser.toNumber("abc"));
+    }
+
+    @Test
+    void numbersAreReturnedAsIs() {
+        Integer value = 1000;
+        assertSame(value, NumberParser.toNumber(value));
+        assertEquals(12L, NumberParser.toNumber(new StringBuilder("12")));
+    }
+
+    private static String decimal(String value) {
+        return value.replace('.', SYMBOLS.getDecimalSeparator());
+    }
+
+    private static void assertSameAsFormat(String... values) {
+        for (String value : values) {
+            Number expected;
+            try {
+                expected = NumberFormat.getInstance().parse(value);
+            } catch (ParseException e) {
+                expected = null;
+            }
+            assertEquals(expected, NumberParser.toNumber(value), value);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.blr19c.common.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link PictogramRowSet}中不存在的列与value为null的列是不同的
+ *
+ * @author blr
+ */
+class PictogramRowSetTest {
+
+    @Test
+    void absentColumnIsNotNullValue() {
+        PictogramRowSet rowSet = new PictogramRowSet();
+        PictogramRow first = rowSet.addRow(map("id", 1, "name", null));
+        PictogramRow second = rowSet.addRow(map("id", 2, "remark", "r"));
+        assertEquals(Arrays.asList("id", "name", "remark"), rowSet.getColumns());
+        //name在第一行是null 在第二行不存在
+        assertTrue(first.containsKey("name"));
+        assertNull(first.get("name"));
+        assertFalse(second.containsKey("name"));
+        assertNull(second.get("name"));
+        //remark是第一行之后增加的列
+        assertFalse(first.containsKey("remark"));
+        assertFalse(first.containsKey("unknown"));
+        assertEquals(2, first.size());
+        assertEquals(2, second.size());
+        assertEquals(map("id", 1, "name", null), first);
+        assertEquals(map("id", 2, "remark", "r"), second);
+        assertEquals(first.keySet(), new HashSet<>(Arrays.asList("id", "name")));
+    }
+
+    @Test
+    void putAndRemoveKeepNullAndAbsentApart() {
+        PictogramRowSet rowSet = PictogramRowSet.of(Arrays.asList(map("id", 1), map("id", 2)));
+        PictogramRow first = rowSet.get(0);
+        PictogramRow second = rowSet.get(1);
+        assertNull(first.put("name", null));
+        assertTrue(first.containsKey("name"));
+        assertFalse(second.containsKey("name"));
+        assertNull(first.put("name", "blr"));
+        assertEquals("blr", first.put("name", null));
+        assertNull(first.remove("name"));
+        assertFalse(first.containsKey("name"));
+        assertNull(first.remove("name"));
+        assertNull(second.remove("unknown"));
+        assertEquals(Collections.singletonMap("id", 1), first);
+        //删除的列不会从集合中删除
+        assertEquals(Arrays.asList("id", "name"), rowSet.getColumns());
+        first.clear();
+        assertTrue(first.isEmpty());
+        assertFalse(first.containsKey("id"));
+        assertEquals(Collections.singletonMap("id", 2), second);
+    }
+
+    @Test
+    void iteratorSkipsAbsentColumns() {
+        PictogramRowSet rowSet = new PictogramRowSet();
+        rowSet.addRow(map("a", 1, "b", 2, "c", 3));
+        PictogramRow row = rowSet.addRow(map("c", null, "a", 1));
+        List<Object> keys = new ArrayList<>();
+        for (Map.Entry<Object, Object> entry : row.entrySet())
+            keys.add(entry.getKey());
+        //按照列的顺序 b不存在
+        assertEquals(Arrays.asList("a", "c"), keys);
+        Iterator<Map.Entry<Object, Object>> iterator = row.entrySet().iterator();
+        iterator.next().setValue(10);
+        iterator.remove();
+        assertThrows(IllegalStateException.class, iterator::remove);
+        assertEquals(Collections.singletonMap("c", null), row);
+        assertFalse(row.containsKey("a"));
+    }
+
+    @Test
+    void rowsFromOtherSetAreCopied() {
+        PictogramRowSet source = new PictogramRowSet();
+        PictogramRow row = source.addRow(map("x", 1, "y", null));
+        PictogramRowSet target = new PictogramRowSet();
+        target.addRow(map("y", "y", "z", "z"));
+        target.add(row);
+        PictogramRow copied = target.get(1);
+        assertNotSame(row, copied);
+        assertSame(target, copied.rowSet);
+        assertEquals(row, copied);
+        assertTrue(copied.containsKey("y"));
+        assertFalse(copied.containsKey("z"));
+        assertEquals(Arrays.asList("y", "z", "x"), target.getColumns());
+    }
+
+    @Test
+    void transformedKeysMatchPictogramTransform() {
+        PictogramTransform transform = PictogramTransform.of().underlineKeyToCamel();
+        //与PictogramTransform#apply相同 转换后改变的key覆盖没有改变的key
+        Map<Object, Object> camelFirst = map("userName", "camel", "user_name", "underline", "age", null);
+        Map<Object, Object> underlineFirst = map("user_name", "underline", "userName", "camel", "age", null);
+        PictogramRowSet rowSet = new PictogramRowSet();
+        PictogramRow first = rowSet.addRow(camelFirst, transform);
+        PictogramRow second = rowSet.addRow(underlineFirst, transform);
+        assertEquals(transform.apply(camelFirst).getMap(), first);
+        assertEquals(transform.apply(underlineFirst).getMap(), second);
+        assertEquals("underline", first.get("userName"));
+        assertEquals("underline", second.get("userName"));
+        assertTrue(second.containsKey("age"));
+        assertEquals(Arrays.asList("userName", "age"), rowSet.getColumns());
+        assertEquals(map("userName", "underline", "age", null), first.toPictogramMap().getMap());
+    }
+
+    private static Map<Object, Object> map(Object... keyValues) {
+        Map<Object, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2)
+            map.put(keyValues[i], keyValues[i + 1]);
+        return map;
+    }
+}
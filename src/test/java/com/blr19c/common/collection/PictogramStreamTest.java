@@ -0,0 +1,210 @@
+package com.blr19c.common.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link PictogramStream}的拆分 并行线程池和集合操作
+ *
+ * @author blr
+ */
+class PictogramStreamTest {
+
+    @Test
+    void listSpliteratorSplitsEvenly() {
+        List<Integer> list = IntStream.range(0, 101).boxed().collect(Collectors.toList());
+        Spliterator<Integer> suffix = new PictogramStream.ListSpliterator<>(list, 0, list.size());
+        Spliterator<Integer> prefix = suffix.trySplit();
+        assertEquals(50, prefix.estimateSize());
+        assertEquals(51, suffix.estimateSize());
+        assertTrue(suffix.hasCharacteristics(Spliterator.SUBSIZED));
+        List<Integer> visited = new ArrayList<>();
+        assertTrue(prefix.tryAdvance(visited::add));
+        prefix.forEachRemaining(visited::add);
+        assertFalse(prefix.tryAdvance(visited::add));
+        suffix.forEachRemaining(visited::add);
+        assertEquals(list, visited);
+        //只剩一个元素时不再拆分
+        Spliterator<Integer> single = new PictogramStream.ListSpliterator<>(list, 5, 6);
+        assertNull(single.trySplit());
+        assertEquals(1, single.estimateSize());
+    }
+
+    @Test
+    void iteratorSpliteratorListUsesIndex() {
+        List<Integer> list = new IteratorSpliteratorList(10);
+        //迭代器拆分也是SUBSIZED
+        assertTrue(list.spliterator().hasCharacteristics(Spliterator.SUBSIZED));
+        assertTrue(PictogramStream.of(list).spliterator() instanceof PictogramStream.ListSpliterator);
+        //包装类使用被包装的List的spliterator
+        assertTrue(PictogramStream.of(Collections.unmodifiableList(list)).spliterator() instanceof PictogramStream.ListSpliterator);
+        assertTrue(PictogramStream.of(Collections.synchronizedList(list)).spliterator() instanceof PictogramStream.ListSpliterator);
+        List<Integer> arrayList = new ArrayList<>(list);
+        assertFalse(PictogramStream.of(arrayList).spliterator() instanceof PictogramStream.ListSpliterator);
+        assertFalse(PictogramStream.of(Collections.synchronizedList(arrayList)).spliterator() instanceof PictogramStream.ListSpliterator);
+        assertFalse(PictogramStream.of(Collections.unmodifiableList(arrayList)).spliterator() instanceof PictogramStream.ListSpliterator);
+        assertFalse(PictogramStream.of(new LinkedList<>(list)).spliterator() instanceof PictogramStream.ListSpliterator);
+        assertEquals(arrayList, PictogramStream.of(Collections.synchronizedList(list)).parallel().toList());
+    }
+
+    @Test
+    void parallelRowSetKeepsOrder() {
+        PictogramRowSet rowSet = rowSet(10_000);
+        List<Object> ids = PictogramStream.of(rowSet).parallel().map(row -> row.get("id")).toList();
+        assertEquals(IntStream.range(0, 10_000).boxed().collect(Collectors.toList()), ids);
+    }
+
+    @Test
+    void parallelPoolRunsTerminalOperationInPool() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            Set<String> threads = ConcurrentHashMap.newKeySet();
+            long count = PictogramStream.of(IntStream.range(0, 10_000).boxed().collect(Collectors.toList()))
+                    .parallel(pool)
+                    .peek(i -> threads.add(Thread.currentThread().getName()))
+                    .count();
+            assertEquals(10_000, count);
+            for (String thread : threads)
+                assertTrue(thread.startsWith("ForkJoinPool-"), thread);
+            assertFalse(threads.contains(Thread.currentThread().getName()));
+        } finally {
+            pool.shutdown();
+        }
+        assertThrows(IllegalArgumentException.class, () -> PictogramStream.of(1, 2).parallel(0));
+    }
+
+    @Test
+    void distinctByKeepsFirstOfEachKey() {
+        List<String> words = Arrays.asList("apple", "avocado", "banana", null, "blueberry", "cherry", null, "apricot");
+        //null元素的key也是null 与其他null相同
+        assertEquals(Arrays.asList("apple", "banana", null, "cherry"),
+                PictogramStream.of(words).distinctBy(w -> w == null ? null : w.charAt(0)).toList());
+        List<Integer> numbers = IntStream.range(0, 10_000).boxed().collect(Collectors.toList());
+        assertEquals(IntStream.range(0, 7).boxed().collect(Collectors.toList()),
+                PictogramStream.of(numbers).parallel().distinctBy(i -> i % 7).toList());
+        assertThrows(NullPointerException.class, () -> PictogramStream.of(words).distinctBy(null));
+    }
+
+    @Test
+    void topKMatchesSort() {
+        Random random = new Random(42);
+        List<Integer> numbers = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++)
+            numbers.add(random.nextInt(1_000));
+        List<Integer> descending = new ArrayList<>(numbers);
+        descending.sort(Comparator.reverseOrder());
+        List<Integer> ascending = new ArrayList<>(numbers);
+        ascending.sort(Comparator.naturalOrder());
+        for (int k : new int[]{0, 1, 10, 999, 5_000, 6_000}) {
+            int expected = Math.min(k, numbers.size());
+            assertEquals(descending.subList(0, expected), PictogramStream.of(numbers).topK(k, Comparator.naturalOrder()).toList());
+            assertEquals(descending.subList(0, expected), PictogramStream.of(numbers).parallel().topK(k, Comparator.naturalOrder()).toList());
+            assertEquals(ascending.subList(0, expected), PictogramStream.of(numbers).bottomK(k, Comparator.naturalOrder()).toList());
+            assertEquals(ascending.subList(0, expected), PictogramStream.of(numbers).parallel().bottomK(k, Comparator.naturalOrder()).toList());
+        }
+        assertThrows(IllegalArgumentException.class, () -> PictogramStream.of(numbers).topK(-1, Comparator.naturalOrder()));
+    }
+
+    @Test
+    void topKByKey() {
+        List<String> words = Arrays.asList("kiwi", "fig", "banana", "apple", "cherry", "plum");
+        assertEquals(Arrays.asList("banana", "cherry"),
+                PictogramStream.of(words).topK(2, String::length).sorted().toList());
+        assertEquals(Collections.singletonList("fig"), PictogramStream.of(words).bottomK(1, String::length).toList());
+        assertEquals(Arrays.asList("apple", "banana"), PictogramStream.of(words).bottomK(2, w -> w).toList());
+        assertTrue(PictogramStream.<String>of().topK(3, String::length).toList().isEmpty());
+    }
+
+    @Test
+    void chunkedKeepsUnevenLastChunk() {
+        List<Integer> numbers = IntStream.range(0, 10).boxed().collect(Collectors.toList());
+        List<List<Integer>> chunks = PictogramStream.of(numbers).chunked(4).toList();
+        assertEquals(Arrays.asList(Arrays.asList(0, 1, 2, 3), Arrays.asList(4, 5, 6, 7), Arrays.asList(8, 9)), chunks);
+        //上游数量已知时批次数量是精确的
+        assertEquals(3, PictogramStream.of(numbers).chunked(4).spliterator().getExactSizeIfKnown());
+        assertEquals(Collections.singletonList(numbers), PictogramStream.of(numbers).chunked(100).toList());
+        assertEquals(10, PictogramStream.of(numbers).chunked(1).count());
+        assertTrue(PictogramStream.<Integer>of().chunked(3).toList().isEmpty());
+        //数量未知的上游
+        List<List<Integer>> unsized = PictogramStream.of(numbers.stream().filter(i -> i % 3 != 0)).chunked(4).toList();
+        assertEquals(Arrays.asList(Arrays.asList(1, 2, 4, 5), Arrays.asList(7, 8)), unsized);
+        assertThrows(IllegalArgumentException.class, () -> PictogramStream.of(numbers).chunked(0));
+    }
+
+    @Test
+    void chunkedReadsLazilyAndClosesSource() {
+        AtomicInteger read = new AtomicInteger();
+        AtomicBoolean closed = new AtomicBoolean();
+        try (PictogramStream<List<Integer>> chunks = PictogramStream.of(IntStream.iterate(0, i -> i + 1).boxed())
+                .peek(i -> read.incrementAndGet())
+                .onClose(() -> closed.set(true))
+                .chunked(5)) {
+            assertEquals(Arrays.asList(5, 6, 7, 8, 9), chunks.skip(1).findFirst().orElse(null));
+            assertEquals(10, read.get());
+        }
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void forEachBatchRunsOnCallerThread() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            List<Integer> sizes = new ArrayList<>();
+            Set<Thread> threads = new HashSet<>();
+            PictogramStream.of(IntStream.range(0, 10).boxed().collect(Collectors.toList()))
+                    .parallel(pool)
+                    .forEachBatch(3, batch -> {
+                        sizes.add(batch.size());
+                        threads.add(Thread.currentThread());
+                    });
+            assertEquals(Arrays.asList(3, 3, 3, 1), sizes);
+            assertEquals(Collections.singleton(Thread.currentThread()), threads);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 与java8的AbstractList相同 spliterator()使用迭代器拆分
+     */
+    private static final class IteratorSpliteratorList extends AbstractList<Integer> implements RandomAccess {
+        private final int size;
+
+        IteratorSpliteratorList(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public Integer get(int index) {
+            if (index < 0 || index >= size)
+                throw new IndexOutOfBoundsException(String.valueOf(index));
+            return index;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Spliterator<Integer> spliterator() {
+            return Spliterators.spliterator(this, Spliterator.ORDERED);
+        }
+    }
+
+    private static PictogramRowSet rowSet(int size) {
+        PictogramRowSet rowSet = new PictogramRowSet(size);
+        for (int i = 0; i < size; i++)
+            rowSet.addRow(Collections.singletonMap("id", i));
+        return rowSet;
+    }
+}
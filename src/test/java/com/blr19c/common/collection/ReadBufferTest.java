@@ -0,0 +1,81 @@
+package com.blr19c.common.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link ReadBuffer}满了之后丢弃 清理之后可以继续写入
+ *
+ * @author blr
+ */
+class ReadBufferTest {
+
+    @Test
+    void dropsWhenFull() {
+        ReadBuffer<Integer> buffer = new ReadBuffer<>(1);
+        for (int i = 0; i < ReadBuffer.RING_SIZE - 1; i++)
+            assertFalse(buffer.offer(i));
+        //最后一个位置写入之后提示需要清理
+        assertTrue(buffer.offer(ReadBuffer.RING_SIZE - 1));
+        //已满 直接丢弃
+        assertTrue(buffer.offer(100));
+        assertTrue(buffer.offer(101));
+        List<Integer> drained = new ArrayList<>();
+        buffer.drainTo(drained::add);
+        assertEquals(ReadBuffer.RING_SIZE, drained.size());
+        for (int i = 0; i < drained.size(); i++)
+            assertEquals(Integer.valueOf(i), drained.get(i));
+        //清理之后可以继续写入
+        assertFalse(buffer.offer(200));
+        drained.clear();
+        buffer.drainTo(drained::add);
+        assertEquals(Collections.singletonList(200), drained);
+        buffer.drainTo(drained::add);
+        assertEquals(1, drained.size());
+    }
+
+    @Test
+    void concurrentOffersAreLossyButNeverDuplicated() throws Exception {
+        ReadBuffer<Integer> buffer = new ReadBuffer<>(4);
+        AtomicInteger sequence = new AtomicInteger();
+        Set<Integer> drained = new HashSet<>();
+        List<Integer> duplicated = new ArrayList<>();
+        Object lock = new Object();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++)
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 100_000; i++) {
+                        //与CacheHashMap相同 缓冲区满时由写入的线程清理
+                        if (buffer.offer(sequence.incrementAndGet()))
+                            synchronized (lock) {
+                                buffer.drainTo(e -> {
+                                    if (!drained.add(e))
+                                        duplicated.add(e);
+                                });
+                            }
+                    }
+                }));
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+        buffer.drainTo(e -> {
+            if (!drained.add(e))
+                duplicated.add(e);
+        });
+        assertTrue(duplicated.isEmpty(), "duplicated:" + duplicated.size());
+        assertFalse(drained.contains(null));
+        assertTrue(drained.size() <= sequence.get());
+        assertTrue(drained.size() > 0);
+    }
+}
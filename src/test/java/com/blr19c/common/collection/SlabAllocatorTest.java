@@ -0,0 +1,188 @@
+package com.blr19c.common.collection;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link SlabAllocator}释放的块可以重复使用,被删除的块在读取结束后只释放一次
+ *
+ * @author blr
+ */
+class SlabAllocatorTest {
+    private static final OffHeapCacheHashMap.Codec<String> CODEC = new OffHeapCacheHashMap.Codec<String>() {
+        @Override
+        public byte[] encode(String value) {
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(InputStream inputStream) throws IOException {
+            return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+        }
+    };
+
+    @Test
+    void reusesReleasedChunk() throws IOException {
+        SlabAllocator allocator = new SlabAllocator(1024, 1024);
+        List<SlabAllocator.Slot> slots = new ArrayList<>();
+        SlabAllocator.Slot slot;
+        while ((slot = allocator.allocate(100)) != null)
+            slots.add(slot);
+        //100字节使用128字节的块 一个slab放8个
+        assertEquals(8, slots.size());
+        assertEquals(1024, allocator.getUsedBytes());
+        assertEquals(1024, allocator.getAllocatedBytes());
+        SlabAllocator.Slot released = slots.get(3);
+        released.retire(allocator);
+        assertEquals(1024 - 128, allocator.getUsedBytes());
+        String value = StringUtils.repeat('r', 120);
+        SlabAllocator.Slot reused = allocator.allocate(value.length());
+        assertSame(released.slab, reused.slab);
+        assertEquals(released.offset, reused.offset);
+        reused.write(CODEC.encode(value));
+        assertTrue(reused.acquire());
+        assertEquals(value, reused.read(CODEC));
+        reused.release(allocator);
+        assertNull(allocator.allocate(100));
+    }
+
+    @Test
+    void emptySlabCanBeSplitAgain() {
+        SlabAllocator allocator = new SlabAllocator(1024, 1024);
+        List<SlabAllocator.Slot> slots = new ArrayList<>();
+        for (int i = 0; i < 16; i++)
+            slots.add(allocator.allocate(SlabAllocator.MIN_CHUNK_SIZE));
+        assertNull(allocator.allocate(1024));
+        for (SlabAllocator.Slot slot : slots)
+            slot.retire(allocator);
+        assertEquals(0, allocator.getUsedBytes());
+        //全部释放之后slab可以切分成其他大小 不会申请新的内存
+        SlabAllocator.Slot slot = allocator.allocate(1000);
+        assertEquals(1024, slot.chunkSize());
+        assertEquals(1024, allocator.getAllocatedBytes());
+        assertThrows(IllegalArgumentException.class, () -> allocator.allocate(1025));
+    }
+
+    @Test
+    void retireWaitsForReaders() throws IOException {
+        SlabAllocator allocator = new SlabAllocator(128, 128);
+        byte[] bytes = "value".getBytes(StandardCharsets.UTF_8);
+        SlabAllocator.Slot slot = allocator.allocate(bytes.length);
+        slot.write(bytes);
+        assertTrue(slot.acquire());
+        assertTrue(slot.acquire());
+        slot.retire(allocator);
+        //还有读取时不释放 不会被重新分配
+        assertFalse(slot.acquire());
+        assertNull(allocator.allocate(100));
+        assertEquals("value", slot.read(CODEC));
+        slot.release(allocator);
+        assertNull(allocator.allocate(100));
+        slot.release(allocator);
+        assertEquals(0, allocator.getUsedBytes());
+        assertNotNull(allocator.allocate(100));
+    }
+
+    @Test
+    void retireTwiceFreesOnce() {
+        SlabAllocator allocator = new SlabAllocator(256, 256);
+        SlabAllocator.Slot first = allocator.allocate(SlabAllocator.MIN_CHUNK_SIZE);
+        allocator.allocate(SlabAllocator.MIN_CHUNK_SIZE);
+        first.retire(allocator);
+        first.retire(allocator);
+        assertEquals(SlabAllocator.MIN_CHUNK_SIZE, allocator.getUsedBytes());
+        //重复释放会让同一个块出现在空闲链表中两次
+        Set<Integer> offsets = new HashSet<>();
+        SlabAllocator.Slot slot;
+        while ((slot = allocator.allocate(SlabAllocator.MIN_CHUNK_SIZE)) != null)
+            assertTrue(offsets.add(slot.offset));
+        assertEquals(3, offsets.size());
+    }
+
+    @Test
+    void concurrentReadersAndRetireFreeExactlyOnce() throws Exception {
+        Map<SlabAllocator.Slot, AtomicInteger> frees = new ConcurrentHashMap<>();
+        Map<SlabAllocator.Slot, AtomicInteger> readers = new ConcurrentHashMap<>();
+        AtomicBoolean freedWhileReading = new AtomicBoolean();
+        SlabAllocator allocator = new SlabAllocator(1 << 16, 1 << 16) {
+            @Override
+            synchronized void free(Slot slot) {
+                if (readers.get(slot).get() != 0)
+                    freedWhileReading.set(true);
+                frees.computeIfAbsent(slot, s -> new AtomicInteger()).incrementAndGet();
+                super.free(slot);
+            }
+        };
+        List<SlabAllocator.Slot> slots = new ArrayList<>();
+        for (int i = 0; i < 256; i++) {
+            SlabAllocator.Slot slot = allocator.allocate(100);
+            slots.add(slot);
+            readers.put(slot, new AtomicInteger());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 3; t++)
+                futures.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 200_000; i++) {
+                        SlabAllocator.Slot slot = slots.get(random.nextInt(slots.size()));
+                        if (!slot.acquire())
+                            continue;
+                        readers.get(slot).incrementAndGet();
+                        readers.get(slot).decrementAndGet();
+                        slot.release(allocator);
+                    }
+                }));
+            futures.add(executor.submit(() -> {
+                for (SlabAllocator.Slot slot : slots) {
+                    slot.retire(allocator);
+                    slot.retire(allocator);
+                    Thread.yield();
+                }
+            }));
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertFalse(freedWhileReading.get());
+        assertEquals(slots.size(), frees.size());
+        for (AtomicInteger count : frees.values())
+            assertEquals(1, count.get());
+        assertEquals(0, allocator.getUsedBytes());
+    }
+
+    @Test
+    void offHeapCacheReturnsChunksOnRemoval() {
+        OffHeapCacheHashMap<Integer, String> cache = new OffHeapCacheHashMap<>(CacheHashMap.DeleteStrategyEnum.OLDEST,
+                1000, 4096, 1024, CODEC);
+        for (int i = 0; i < 200; i++)
+            cache.putCache(i, "value-" + i);
+        //最多4096字节 每个value一个64字节的块
+        assertEquals(64, cache.size());
+        assertEquals(4096, cache.getUsedBytes());
+        assertEquals("value-199", cache.getCache(199));
+        assertNull(cache.getCache(0));
+        //替换时先写入新的块(内存不足时删除其他元素) 再释放旧的块
+        cache.putCache(199, "replaced");
+        assertEquals("replaced", cache.getCache(199));
+        assertEquals(63, cache.size());
+        assertEquals(cache.size() * 64L, cache.getUsedBytes());
+        assertEquals("loaded", cache.getOrLoad(-1, key -> "loaded"));
+        cache.clear();
+        assertEquals(0, cache.getUsedBytes());
+        assertEquals(4096, cache.getAllocatedBytes());
+    }
+}
@@ -0,0 +1,137 @@
+package com.blr19c.common.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link TimerWheel}在每一层中的元素都会在到期之后的一个最小跨度内过期
+ *
+ * @author blr
+ */
+class TimerWheelTest {
+    private static final long STEP = TimeUnit.MILLISECONDS.toNanos(500);
+
+    @Test
+    void expiresAcrossLevels() {
+        assertExpiresOnTime(0L);
+    }
+
+    @Test
+    void expiresAcrossNanoTimeOverflow() {
+        //System.nanoTime()可能是任意值 推进过程中越过Long.MAX_VALUE
+        assertExpiresOnTime(Long.MAX_VALUE - TimeUnit.HOURS.toNanos(2));
+    }
+
+    @Test
+    void descheduledNodeNeverExpires() {
+        TimerWheel<String> wheel = new TimerWheel<>(0L);
+        CacheHashMap.Node<String> kept = node("kept", TimeUnit.MINUTES.toNanos(5));
+        CacheHashMap.Node<String> removed = node("removed", TimeUnit.MINUTES.toNanos(5));
+        wheel.schedule(kept);
+        wheel.schedule(removed);
+        wheel.deschedule(removed);
+        assertNull(removed.timerNext);
+        Map<String, Long> expired = new HashMap<>();
+        wheel.advance(TimeUnit.MINUTES.toNanos(10), node -> expired.put(node.key, 0L));
+        assertEquals(1, expired.size());
+        assertTrue(expired.containsKey("kept"));
+    }
+
+    @Test
+    void rescheduleMovesNode() {
+        TimerWheel<String> wheel = new TimerWheel<>(0L);
+        CacheHashMap.Node<String> node = node("a", TimeUnit.SECONDS.toNanos(2));
+        wheel.schedule(node);
+        //访问之后延后到3小时
+        node.expireNanos = TimeUnit.HOURS.toNanos(3);
+        wheel.schedule(node);
+        Map<String, Long> expired = new HashMap<>();
+        wheel.advance(TimeUnit.HOURS.toNanos(1), n -> expired.put(n.key, 0L));
+        assertTrue(expired.isEmpty());
+        //时间轮处理到时发现还没有到期 重新放入更低的层
+        node.expireNanos = TimeUnit.HOURS.toNanos(5);
+        wheel.advance(TimeUnit.HOURS.toNanos(4), n -> expired.put(n.key, 0L));
+        assertTrue(expired.isEmpty());
+        wheel.advance(TimeUnit.HOURS.toNanos(6), n -> expired.put(n.key, 0L));
+        assertTrue(expired.containsKey("a"));
+    }
+
+    @Test
+    void largeJumpExpiresEverything() {
+        TimerWheel<Integer> wheel = new TimerWheel<>(0L);
+        long[] delays = delays();
+        for (int i = 0; i < delays.length; i++)
+            wheel.schedule(node(i, delays[i]));
+        Map<Integer, Long> expired = new HashMap<>();
+        wheel.advance(TimeUnit.DAYS.toNanos(30), node -> expired.put(node.key, 0L));
+        assertEquals(delays.length, expired.size());
+    }
+
+    @Test
+    void clearUnlinksEveryNode() {
+        TimerWheel<Integer> wheel = new TimerWheel<>(0L);
+        long[] delays = delays();
+        List<CacheHashMap.Node<Integer>> nodes = new ArrayList<>();
+        for (int i = 0; i < delays.length; i++) {
+            nodes.add(node(i, delays[i]));
+            wheel.schedule(nodes.get(i));
+        }
+        wheel.clear();
+        for (CacheHashMap.Node<Integer> node : nodes)
+            assertNull(node.timerNext);
+        Map<Integer, Long> expired = new HashMap<>();
+        wheel.advance(TimeUnit.DAYS.toNanos(30), node -> expired.put(node.key, 0L));
+        assertTrue(expired.isEmpty());
+    }
+
+    /**
+     * 每一层都有元素 按照0.5秒推进 到期时间不能提前 最多延后一个最小跨度
+     */
+    private static void assertExpiresOnTime(long start) {
+        TimerWheel<Integer> wheel = new TimerWheel<>(start);
+        long[] delays = delays();
+        for (int i = 0; i < delays.length; i++)
+            wheel.schedule(node(i, start + delays[i]));
+        Map<Integer, Long> expired = new HashMap<>();
+        long end = start + TimeUnit.DAYS.toNanos(12);
+        for (long now = start; now - end < 0L; now += STEP) {
+            long current = now;
+            wheel.advance(now, node -> assertNull(expired.put(node.key, current)));
+        }
+        assertEquals(delays.length, expired.size());
+        for (int i = 0; i < delays.length; i++) {
+            long late = expired.get(i) - (start + delays[i]);
+            assertTrue(late >= 0L, "expired early, delay:" + delays[i] + " late:" + late);
+            assertTrue(late < TimerWheel.SPANS[0] + STEP, "expired late, delay:" + delays[i] + " late:" + late);
+        }
+    }
+
+    /**
+     * 分别落在5层中
+     */
+    private static long[] delays() {
+        return new long[]{
+                TimeUnit.MILLISECONDS.toNanos(700),
+                TimeUnit.SECONDS.toNanos(30),
+                TimeUnit.MINUTES.toNanos(5),
+                TimeUnit.MINUTES.toNanos(90),
+                TimeUnit.HOURS.toNanos(3),
+                TimeUnit.HOURS.toNanos(50),
+                TimeUnit.DAYS.toNanos(3),
+                TimeUnit.DAYS.toNanos(10),
+        };
+    }
+
+    private static <K> CacheHashMap.Node<K> node(K key, long expireNanos) {
+        CacheHashMap.Node<K> node = new CacheHashMap.Node<>(null, null, key);
+        node.expireNanos = expireNanos;
+        return node;
+    }
+}